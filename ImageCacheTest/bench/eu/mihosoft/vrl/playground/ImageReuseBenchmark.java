@@ -0,0 +1,267 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>
+ * JMH benchmark that compares image creation with different reuse and
+ * clearing strategies. This replaces the <code>System.nanoTime()</code>
+ * loops of {@link Main}. Each reuse strategy is a benchmark method. Only the
+ * strategies that clear images themselves are crossed with the clearing
+ * strategies.
+ * </p>
+ * <p>
+ * Run it via <code>ant bench -Djmh.classpath=...</code>. The number of
+ * threads is specified via the JMH option <code>-t</code>, e.g.,
+ * <code>-Djmh.args="-t 4 -prof gc"</code>. All threads share the cache.
+ * </p>
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageReuseBenchmark {
+
+    /**
+     * Image size (<code>width</code>x<code>height</code>).
+     */
+    @Param({"120x80", "640x480", "2048x2048"})
+    public String size;
+    /**
+     * Name of a <code>BufferedImage</code> type constant.
+     */
+    @Param({"TYPE_INT_ARGB", "TYPE_INT_RGB"})
+    public String imageType;
+
+    private int width;
+    private int height;
+    private int type;
+    private ObjectCache cache;
+    private ImageKey key;
+    private SlabAllocator allocator;
+
+    /**
+     * Clearing strategy of the benchmarks that reuse images:
+     * <code>graphics</code> uses <code>AlphaComposite.Clear</code>,
+     * <code>bulk</code> fills the whole raster array and <code>dirty</code>
+     * only clears the region that has been tracked while drawing (see
+     * {@link TrackingGraphics2D}).
+     */
+    @State(Scope.Benchmark)
+    public static class Clearing {
+
+        @Param({"graphics", "bulk", "dirty"})
+        public String clearing;
+
+        /**
+         * Registers the reset hook that clears the tracked region of
+         * disposed images (<code>dirty</code> only).
+         * @param b the benchmark state
+         */
+        @Setup
+        public void setup(ImageReuseBenchmark b) {
+            if (isDirty()) {
+                b.cache.registerResetHook(
+                        BufferedImage.class, new ImageClearer());
+            }
+        }
+
+        /**
+         * @return <code>true</code> if only the tracked region is cleared;
+         *         <code>false</code> otherwise
+         */
+        boolean isDirty() {
+            return "dirty".equals(clearing);
+        }
+    }
+
+    /**
+     * Image that is reused by one thread (<code>list</code> benchmark).
+     */
+    @State(Scope.Thread)
+    public static class ThreadImage {
+
+        private BufferedImage image;
+        private final DirtyRegion region = new DirtyRegion();
+
+        /**
+         * Creates the image of the calling thread.
+         * @param b the benchmark state
+         */
+        @Setup
+        public void setup(ImageReuseBenchmark b) {
+            image = new BufferedImage(b.width, b.height, b.type);
+        }
+    }
+
+    /**
+     * Creates the cache and the slab allocator.
+     * @throws Exception if the image type is unknown
+     */
+    @Setup
+    public void setup() throws Exception {
+        String[] dims = size.split("x");
+        width = Integer.parseInt(dims[0]);
+        height = Integer.parseInt(dims[1]);
+        type = BufferedImage.class.getField(imageType).getInt(null);
+
+        cache = new ObjectCache();
+        cache.registerCreator(new ImageCreator());
+        key = new ImageKey(width, height, type);
+        allocator = new SlabAllocator(cache, 2048, 2048, type);
+    }
+
+    /**
+     * Stops the background threads of the cache.
+     */
+    @TearDown
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    /**
+     * Creates a new image for each operation.
+     * @param bh the blackhole that consumes the image
+     */
+    @Benchmark
+    public void none(Blackhole bh) {
+        BufferedImage img = new BufferedImage(width, height, type);
+        draw(img.createGraphics());
+        bh.consume(img);
+    }
+
+    /**
+     * Obtains an image from the cache, draws into it and disposes it. In
+     * <code>dirty</code> mode the cache clears the tracked region of the
+     * disposed image.
+     * @param c the clearing strategy
+     * @param bh the blackhole that consumes the image
+     * @throws ClassNotSupportedException if no image creator is registered
+     */
+    @Benchmark
+    public void cache(Clearing c, Blackhole bh)
+            throws ClassNotSupportedException {
+        BufferedImage img = (BufferedImage) cache.getInstance(key);
+
+        if (c.isDirty()) {
+            draw(cache.createGraphics(img));
+        } else {
+            clear(img, c);
+            draw(img.createGraphics());
+        }
+
+        bh.consume(img);
+        cache.dispose(img);
+    }
+
+    /**
+     * Reuses one image per thread. In <code>dirty</code> mode the region
+     * that has been drawn by the previous operation is cleared.
+     * @param local the image of the calling thread
+     * @param c the clearing strategy
+     * @param bh the blackhole that consumes the image
+     */
+    @Benchmark
+    public void list(ThreadImage local, Clearing c, Blackhole bh) {
+        BufferedImage img = local.image;
+
+        if (c.isDirty()) {
+            ImageClearer.clear(img, local.region);
+            local.region.markClean();
+            draw(new TrackingGraphics2D(img.createGraphics(), local.region));
+        } else {
+            clear(img, c);
+            draw(img.createGraphics());
+        }
+
+        bh.consume(img);
+    }
+
+    /**
+     * Allocates sub-images of shared slabs. The allocator clears freed
+     * images.
+     * @param bh the blackhole that consumes the image
+     * @throws ClassNotSupportedException if no image creator is registered
+     */
+    @Benchmark
+    public void subimage(Blackhole bh) throws ClassNotSupportedException {
+        BufferedImage img = allocator.allocate(width, height);
+        draw(img.createGraphics());
+        bh.consume(img);
+        allocator.free(img);
+    }
+
+    /**
+     * Draws into an image and disposes the graphics object.
+     * @param g2 the graphics object of the image
+     */
+    private void draw(Graphics2D g2) {
+        g2.fillRect(10, 10, width / 2, height / 2);
+        g2.dispose();
+    }
+
+    /**
+     * Clears a whole reused image according to the clearing strategy.
+     * @param img the image to clear
+     * @param c the clearing strategy (<code>graphics</code> or
+     *          <code>bulk</code>)
+     */
+    private void clear(BufferedImage img, Clearing c) {
+        if ("graphics".equals(c.clearing)) {
+            Graphics2D g2 = img.createGraphics();
+            g2.setComposite(AlphaComposite.Clear);
+            g2.fillRect(0, 0, width, height);
+            g2.dispose();
+        } else {
+            ImageClearer.clear(img);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of cache hits, i.e., of acquiring and releasing an image
+ * that is already in the cache. With <code>-prof gc</code> the typed
+ * entry points are expected to report an allocation rate of 0 B/op.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolHitBenchmark {
+
+    private ObjectCache cache;
+    private ImagePool pool;
+    private static final int BATCH_SIZE = 16;
+    private ImageKey key;
+
+    /**
+     * Creates the cache and fills it with one batch of images.
+     * @throws ClassNotSupportedException if no image creator is registered
+     */
+    @Setup
+    public void setup() throws ClassNotSupportedException {
+        cache = new ObjectCache();
+        cache.registerCreator(new ImageCreator());
+        pool = new ImagePool(cache);
+        key = new ImageKey(640, 480, BufferedImage.TYPE_INT_ARGB);
+        pool.releaseAll(pool.acquireAll(key, BATCH_SIZE));
+    }
+
+    /**
+     * Uses the varargs entry point (boxes its arguments).
+     * @return the acquired image
+     * @throws ClassNotSupportedException if no image creator is registered
+     */
+    @Benchmark
+    public Object varargs() throws ClassNotSupportedException {
+        Object img = cache.getInstance(BufferedImage.class, 640, 480);
+        cache.dispose(img);
+        return img;
+    }
+
+    /**
+     * Uses a prebuilt key.
+     * @return the acquired image
+     * @throws ClassNotSupportedException if no image creator is registered
+     */
+    @Benchmark
+    public BufferedImage typedKey() throws ClassNotSupportedException {
+        BufferedImage img = pool.acquire(key);
+        pool.release(img);
+        return img;
+    }
+
+    /**
+     * Uses the primitive entry point.
+     * @return the acquired image
+     * @throws ClassNotSupportedException if no image creator is registered
+     */
+    @Benchmark
+    public BufferedImage primitive() throws ClassNotSupportedException {
+        BufferedImage img = pool.acquire(640, 480, BufferedImage.TYPE_INT_ARGB);
+        pool.release(img);
+        return img;
+    }
+
+    /**
+     * Acquires and releases a batch of images (compare with
+     * <code>typedKey</code> times the batch size).
+     * @return the acquired images
+     * @throws ClassNotSupportedException if no image creator is registered
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<BufferedImage> batch() throws ClassNotSupportedException {
+        List<BufferedImage> images = pool.acquireAll(key, BATCH_SIZE);
+        pool.releaseAll(images);
+        return images;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.Arrays;
+
+/**
+ * Fills disposed primitive arrays with zeros. Register it for each array
+ * class whose arrays must be zeroed, e.g.,
+ * <code>cache.registerResetHook(int[].class, new ArrayClearer())</code>.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ArrayClearer implements ResetHook {
+
+    @Override
+    public void reset(ObjectEntry oE) {
+        clear(oE.getObject());
+    }
+
+    /**
+     * Fills a primitive array with zeros.
+     * @param array the array to clear
+     */
+    public static void clear(Object array) {
+        if (array instanceof int[]) {
+            Arrays.fill((int[]) array, 0);
+        } else if (array instanceof float[]) {
+            Arrays.fill((float[]) array, 0);
+        } else if (array instanceof byte[]) {
+            Arrays.fill((byte[]) array, (byte) 0);
+        } else if (array instanceof double[]) {
+            Arrays.fill((double[]) array, 0);
+        } else if (array instanceof long[]) {
+            Arrays.fill((long[]) array, 0);
+        } else if (array instanceof short[]) {
+            Arrays.fill((short[]) array, (short) 0);
+        } else if (array instanceof char[]) {
+            Arrays.fill((char[]) array, (char) 0);
+        } else if (array instanceof boolean[]) {
+            Arrays.fill((boolean[]) array, false);
+        } else {
+            throw new IllegalArgumentException(
+                    "Not a primitive array: " + array.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.lang.reflect.Array;
+
+/**
+ * Creates primitive arrays of one component type. Requested lengths are
+ * rounded up to the next power of two (see {@link ArrayKey#of(Class, int)}).
+ * Arrays are not cleared when they are returned to the cache unless an
+ * {@link ArrayClearer} is registered.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ArrayCreator extends ObjectCreator {
+
+    private final Class<?> componentType;
+
+    /**
+     * Constructor.
+     * @param componentType the component type, e.g., <code>int.class</code>
+     */
+    public ArrayCreator(Class<?> componentType) {
+        if (!componentType.isPrimitive() || componentType == void.class) {
+            throw new IllegalArgumentException(
+                    "Unsupported component type: " + componentType);
+        }
+        this.componentType = componentType;
+        setType(Array.newInstance(componentType, 0).getClass());
+    }
+
+    /**
+     * @return the component type
+     */
+    public Class<?> getComponentType() {
+        return componentType;
+    }
+
+    @Override
+    public ObjectKey createKey(Object... params) {
+        if (params.length != 1 || !(params[0] instanceof Integer)) {
+            throw new IllegalArgumentException(
+                    "Wrong arguments! Supported: int");
+        }
+        return ArrayKey.of(componentType, (Integer) params[0]);
+    }
+
+    @Override
+    public Object[] toParams(ObjectKey key) {
+        return new Object[]{((ArrayKey) key).getLength()};
+    }
+
+    @Override
+    public ObjectEntry newInstance(ObjectKey key) {
+        ArrayKey aKey = (ArrayKey) key;
+        Object array = Array.newInstance(
+                aKey.getComponentType(), aKey.getLength());
+        return new ObjectEntry(array, key, estimateSize(key));
+    }
+
+    @Override
+    public long estimateSize(ObjectKey key) {
+        ArrayKey aKey = (ArrayKey) key;
+        return (long) aKey.getLength() * aKey.getElementSize();
+    }
+}
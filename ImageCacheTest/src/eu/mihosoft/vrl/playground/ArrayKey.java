@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.lang.reflect.Array;
+
+/**
+ * Object key for primitive arrays. Lookups with this key only compare the
+ * component type and the length and do not allocate memory.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class ArrayKey extends ObjectKey {
+
+    private final Class<?> componentType;
+    private final Class<?> arrayType;
+    private final int length;
+
+    /**
+     * Constructor.
+     * @param componentType the component type, e.g., <code>int.class</code>
+     * @param length the array length
+     */
+    public ArrayKey(Class<?> componentType, int length) {
+        if (!componentType.isPrimitive() || componentType == void.class) {
+            throw new IllegalArgumentException(
+                    "Unsupported component type: " + componentType);
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException(
+                    "Negative array length: " + length);
+        }
+        this.componentType = componentType;
+        this.arrayType = Array.newInstance(componentType, 0).getClass();
+        this.length = length;
+    }
+
+    /**
+     * Returns a key for arrays with at least the specified length. The
+     * length is rounded up to the next power of two, i.e., requests with
+     * similar lengths share their arrays.
+     * @param componentType the component type, e.g., <code>int.class</code>
+     * @param minLength the minimum array length
+     * @return the key
+     */
+    public static ArrayKey of(Class<?> componentType, int minLength) {
+        return new ArrayKey(componentType, sizeClass(minLength));
+    }
+
+    /**
+     * Returns the size class of the specified length, i.e., the next power
+     * of two (at least 16).
+     * @param n the length
+     * @return the size class of the specified length
+     */
+    static int sizeClass(int n) {
+        if (n <= 16) {
+            return 16;
+        }
+        if (n > (1 << 30)) {
+            return Integer.MAX_VALUE - 8;
+        }
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    @Override
+    public Class<?> getType() {
+        return arrayType;
+    }
+
+    /**
+     * @return the component type
+     */
+    public Class<?> getComponentType() {
+        return componentType;
+    }
+
+    /**
+     * @return the array length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the size of one array element (in bytes)
+     */
+    public int getElementSize() {
+        if (componentType == long.class || componentType == double.class) {
+            return 8;
+        } else if (componentType == int.class || componentType == float.class) {
+            return 4;
+        } else if (componentType == short.class || componentType == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ArrayKey)) {
+            return false;
+        }
+        ArrayKey other = (ArrayKey) o;
+        return length == other.length && componentType == other.componentType;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * componentType.hashCode() + length;
+    }
+
+    @Override
+    public String toString() {
+        return "ArrayKey[" + componentType.getName() + "[" + length + "]]";
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs reset tasks on a small pool of daemon threads and measures the time
+ * between submission and completion of each task.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class BackgroundResetter {
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong numResets = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param numThreads the number of worker threads
+     */
+    BackgroundResetter(int numThreads) {
+        executor = new ThreadPoolExecutor(numThreads, numThreads,
+                0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new DaemonThreadFactory("ObjectCache-Reset-"));
+    }
+
+    /**
+     * Submits a reset task. If the worker threads have been stopped the task
+     * is run by the calling thread.
+     * @param task the task to submit
+     */
+    void submit(final Runnable task) {
+        final long submitted = System.nanoTime();
+
+        Runnable timedTask = new Runnable() {
+
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    record(System.nanoTime() - submitted);
+                }
+            }
+        };
+
+        try {
+            executor.execute(timedTask);
+        } catch (RejectedExecutionException ex) {
+            timedTask.run();
+        }
+    }
+
+    /**
+     * Records the latency of a completed task.
+     * @param latency the latency (in nanoseconds)
+     */
+    private void record(long latency) {
+        numResets.incrementAndGet();
+        totalLatency.addAndGet(latency);
+
+        long max;
+        while ((max = maxLatency.get()) < latency
+                && !maxLatency.compareAndSet(max, latency)) {
+            // retry
+        }
+    }
+
+    /**
+     * @return the number of tasks that wait for a worker thread
+     */
+    int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the average time between submission and completion of a task
+     *         (in nanoseconds)
+     */
+    long getAverageLatency() {
+        long n = numResets.get();
+        return n == 0 ? 0 : totalLatency.get() / n;
+    }
+
+    /**
+     * @return the maximum time between submission and completion of a task
+     *         (in nanoseconds)
+     */
+    long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    /**
+     * Stops the worker threads after all submitted tasks have been
+     * completed.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Resets disposed byte buffers, i.e., restores position, limit, mark and
+ * byte order. The content is only zeroed if this has been requested since
+ * zeroing large buffers is expensive.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class BufferClearer implements ResetHook {
+
+    private static final byte[] ZEROS = new byte[8192];
+    private final boolean zero;
+
+    /**
+     * Constructor. The content of disposed buffers is not zeroed.
+     */
+    public BufferClearer() {
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     * @param zero defines whether to fill disposed buffers with zeros
+     */
+    public BufferClearer(boolean zero) {
+        this.zero = zero;
+    }
+
+    @Override
+    public void reset(ObjectEntry oE) {
+        ByteBuffer buffer = (ByteBuffer) oE.getObject();
+
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        if (zero) {
+            clear(buffer);
+        }
+    }
+
+    /**
+     * Fills a buffer with zeros. Position and limit are reset.
+     * @param buffer the buffer to clear
+     */
+    public static void clear(ByteBuffer buffer) {
+        buffer.clear();
+
+        if (buffer.hasArray()) {
+            Arrays.fill(buffer.array(), buffer.arrayOffset(),
+                    buffer.arrayOffset() + buffer.capacity(), (byte) 0);
+            return;
+        }
+
+        while (buffer.hasRemaining()) {
+            buffer.put(ZEROS, 0, Math.min(ZEROS.length, buffer.remaining()));
+        }
+
+        buffer.clear();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Creates heap or direct byte buffers. Requested capacities are rounded up
+ * to the next power of two (see {@link BufferKey#of(int, boolean)}). The
+ * memory of evicted direct buffers is released by the garbage collector, i.e.,
+ * slices or duplicates that are still in use remain valid. Register a
+ * {@link BufferClearer} to reset the position and limit of disposed buffers.
+ * <p>
+ * <b>Note:</b> buffers must be disposed directly, not via slices or
+ * duplicates.
+ * </p>
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class BufferCreator extends ObjectCreator {
+
+    private final boolean direct;
+
+    /**
+     * Constructor. Buffers that are requested by capacity only are direct.
+     */
+    public BufferCreator() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * @param direct defines whether buffers that are requested by capacity
+     *               only are direct
+     */
+    public BufferCreator(boolean direct) {
+        this.direct = direct;
+        setType(ByteBuffer.class);
+    }
+
+    @Override
+    public ObjectKey createKey(Object... params) {
+        if (params.length < 1 || params.length > 2
+                || !(params[0] instanceof Integer)
+                || (params.length == 2 && !(params[1] instanceof Boolean))) {
+            throw new IllegalArgumentException(
+                    "Wrong arguments! Supported: int [, boolean]");
+        }
+
+        boolean d = params.length == 2 ? (Boolean) params[1] : direct;
+
+        return BufferKey.of((Integer) params[0], d);
+    }
+
+    @Override
+    public Object[] toParams(ObjectKey key) {
+        BufferKey bKey = (BufferKey) key;
+        return new Object[]{bKey.getCapacity(), bKey.isDirect()};
+    }
+
+    @Override
+    public ObjectEntry newInstance(ObjectKey key) {
+        BufferKey bKey = (BufferKey) key;
+        ByteBuffer buffer = bKey.isDirect()
+                ? ByteBuffer.allocateDirect(bKey.getCapacity())
+                : ByteBuffer.allocate(bKey.getCapacity());
+        return new ObjectEntry(buffer, key, bKey.getCapacity());
+    }
+
+    @Override
+    public long estimateSize(ObjectKey key) {
+        return ((BufferKey) key).getCapacity();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Object key for byte buffers. Lookups with this key only compare primitive
+ * fields and do not allocate memory.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class BufferKey extends ObjectKey {
+
+    private final int capacity;
+    private final boolean direct;
+
+    /**
+     * Constructor.
+     * @param capacity the buffer capacity (in bytes)
+     * @param direct defines whether the buffer is direct
+     */
+    public BufferKey(int capacity, boolean direct) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Negative capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.direct = direct;
+    }
+
+    /**
+     * Returns a key for buffers with at least the specified capacity. The
+     * capacity is rounded up to the next power of two, i.e., requests with
+     * similar capacities share their buffers.
+     * @param minCapacity the minimum capacity (in bytes)
+     * @param direct defines whether the buffer is direct
+     * @return the key
+     */
+    public static BufferKey of(int minCapacity, boolean direct) {
+        return new BufferKey(ArrayKey.sizeClass(minCapacity), direct);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return ByteBuffer.class;
+    }
+
+    /**
+     * @return the buffer capacity (in bytes)
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return <code>true</code> if the buffer is direct;
+     *         <code>false</code> otherwise
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BufferKey)) {
+            return false;
+        }
+        BufferKey other = (BufferKey) o;
+        return capacity == other.capacity && direct == other.direct;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * capacity + (direct ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "BufferKey[" + capacity + (direct ? ", direct]" : "]");
+    }
+}
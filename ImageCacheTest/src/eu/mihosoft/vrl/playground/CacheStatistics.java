@@ -0,0 +1,211 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+/**
+ * Snapshot of the statistics of an object cache, of one class or of one
+ * object key.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class CacheStatistics {
+
+    private final long hits;
+    private final long misses;
+    private final long creations;
+    private final long evictions;
+    private final long returns;
+    private final long leaks;
+    private final long bypasses;
+    private final LatencyHistogram lookupLatency;
+    private final LatencyHistogram creationLatency;
+    private final LatencyHistogram resetLatency;
+
+    /**
+     * Constructor.
+     * @param hits number of requests that have been served from the cache
+     * @param misses number of requests that could not be served from the
+     *               cache
+     * @param creations number of created objects
+     * @param evictions number of evicted objects
+     * @param returns number of disposed objects
+     * @param leaks number of objects that became unreachable without being
+     *              disposed
+     * @param bypasses number of disposed objects that have been dropped
+     *                 instead of being returned to the cache
+     * @param lookupLatency latency of cache lookups
+     * @param creationLatency latency of object creation
+     * @param resetLatency latency of reset hooks
+     */
+    CacheStatistics(long hits, long misses, long creations, long evictions,
+            long returns, long leaks, long bypasses,
+            LatencyHistogram lookupLatency, LatencyHistogram creationLatency,
+            LatencyHistogram resetLatency) {
+        this.hits = hits;
+        this.misses = misses;
+        this.creations = creations;
+        this.evictions = evictions;
+        this.returns = returns;
+        this.leaks = leaks;
+        this.bypasses = bypasses;
+        this.lookupLatency = lookupLatency;
+        this.creationLatency = creationLatency;
+        this.resetLatency = resetLatency;
+    }
+
+    /**
+     * Creates empty statistics.
+     * @return empty statistics
+     */
+    static CacheStatistics empty() {
+        LatencyHistogram h = new LatencyHistogram(
+                new long[LatencyHistogram.NUM_BUCKETS], 0);
+        return new CacheStatistics(0, 0, 0, 0, 0, 0, 0, h, h, h);
+    }
+
+    /**
+     * @return the number of requests that have been served from the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests that could not be served from the cache
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the hit rate (between 0 and 1)
+     */
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * @return the number of created objects
+     */
+    public long getCreations() {
+        return creations;
+    }
+
+    /**
+     * @return the number of evicted objects
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of disposed objects
+     */
+    public long getReturns() {
+        return returns;
+    }
+
+    /**
+     * @return the number of objects that became unreachable without being
+     *         disposed (only detected if leak detection is enabled)
+     */
+    public long getLeaks() {
+        return leaks;
+    }
+
+    /**
+     * @return the number of disposed objects that have been dropped instead
+     *         of being reset and returned to the cache (see
+     *         {@link ObjectCache#setAdaptiveReuse(long,
+     *         java.util.concurrent.TimeUnit)})
+     */
+    public long getBypasses() {
+        return bypasses;
+    }
+
+    /**
+     * @return the number of objects that are currently checked out
+     */
+    public long getOutstanding() {
+        return hits + creations - returns - leaks;
+    }
+
+    /**
+     * @return the latency of cache lookups
+     */
+    public LatencyHistogram getLookupLatency() {
+        return lookupLatency;
+    }
+
+    /**
+     * @return the latency of object creation
+     */
+    public LatencyHistogram getCreationLatency() {
+        return creationLatency;
+    }
+
+    /**
+     * @return the latency of reset hooks
+     */
+    public LatencyHistogram getResetLatency() {
+        return resetLatency;
+    }
+
+    /**
+     * Returns the sum of these and other statistics.
+     * @param other the other statistics
+     * @return the sum of both statistics
+     */
+    public CacheStatistics plus(CacheStatistics other) {
+        return new CacheStatistics(
+                hits + other.hits,
+                misses + other.misses,
+                creations + other.creations,
+                evictions + other.evictions,
+                returns + other.returns,
+                leaks + other.leaks,
+                bypasses + other.bypasses,
+                lookupLatency.plus(other.lookupLatency),
+                creationLatency.plus(other.creationLatency),
+                resetLatency.plus(other.resetLatency));
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics[hits=" + hits + ", misses=" + misses
+                + ", creations=" + creations + ", evictions=" + evictions
+                + ", returns=" + returns + ", leaks=" + leaks
+                + ", bypasses=" + bypasses
+                + ", outstanding=" + getOutstanding()
+                + ", lookup=" + lookupLatency
+                + ", creation=" + creationLatency
+                + ", reset=" + resetLatency + "]";
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads and writes demand profiles. A profile is a text file with one line
+ * per key. Each line contains the class name, the number of objects and the
+ * typed creation parameters of the key, e.g.,
+ * <pre>
+ * java.awt.image.BufferedImage 4 int:640 int:480 int:2
+ * </pre>
+ * Supported parameter types are <code>int</code>, <code>long</code>,
+ * <code>double</code> and <code>boolean</code>. Keys that cannot be
+ * expressed by such parameters are not written.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+final class DemandProfile {
+
+    private static final String HEADER = "# ObjectCache demand profile";
+
+    private DemandProfile() {
+        throw new AssertionError("Don't instantiate me!");
+    }
+
+    /**
+     * Writes a demand profile. The file is replaced atomically, i.e.,
+     * readers never see a partially written profile.
+     * @param cache the cache that converts keys to parameters
+     * @param counts the number of objects per key
+     * @param file the profile file
+     * @throws IOException if the file cannot be written
+     */
+    static void write(ObjectCache cache, Map<ObjectKey, Integer> counts,
+            File file) throws IOException {
+        List<Map.Entry<ObjectKey, Integer>> entries =
+                new ArrayList<Map.Entry<ObjectKey, Integer>>(counts.entrySet());
+
+        // most requested keys first
+        Collections.sort(entries, new Comparator<Map.Entry<ObjectKey, Integer>>() {
+
+            public int compare(Map.Entry<ObjectKey, Integer> e1,
+                    Map.Entry<ObjectKey, Integer> e2) {
+                return e2.getValue().compareTo(e1.getValue());
+            }
+        });
+
+        Path target = file.getAbsoluteFile().toPath();
+        // unique name, i.e., concurrent writers do not share the file
+        Path tmp = Files.createTempFile(target.getParent(),
+                target.getFileName() + ".", ".tmp");
+        boolean moved = false;
+
+        try {
+            try (BufferedWriter w = Files.newBufferedWriter(
+                    tmp, StandardCharsets.UTF_8)) {
+                w.write(HEADER);
+                w.newLine();
+
+                for (Map.Entry<ObjectKey, Integer> e : entries) {
+                    String line = format(cache, e.getKey(), e.getValue());
+                    if (line != null) {
+                        w.write(line);
+                        w.newLine();
+                    }
+                }
+            }
+
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /**
+     * Reads a demand profile. Keys of classes without creator and keys that
+     * are rejected by their creator are skipped.
+     * @param cache the cache that converts parameters to keys
+     * @param file the profile file
+     * @return the number of objects per key
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    static Map<ObjectKey, Integer> read(ObjectCache cache, File file)
+            throws IOException {
+        Map<ObjectKey, Integer> result = new HashMap<ObjectKey, Integer>();
+
+        try (BufferedReader r = Files.newBufferedReader(
+                file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = r.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] tokens = line.split("\\s+");
+
+                if (tokens.length < 2) {
+                    throw malformed(file, lineNumber, line);
+                }
+
+                int count;
+                Object[] params = new Object[tokens.length - 2];
+
+                try {
+                    count = Integer.parseInt(tokens[1]);
+                    for (int i = 0; i < params.length; i++) {
+                        params[i] = parseParam(tokens[i + 2]);
+                    }
+                } catch (IllegalArgumentException ex) {
+                    throw malformed(file, lineNumber, line);
+                }
+
+                ObjectCreator creator = cache.findCreator(tokens[0]);
+
+                if (creator == null) {
+                    Logger.getLogger(DemandProfile.class.getName()).log(
+                            Level.WARNING, "No Creator for {0} found!",
+                            tokens[0]);
+                    continue;
+                }
+
+                try {
+                    result.put(creator.createKey(params), count);
+                } catch (IllegalArgumentException ex) {
+                    Logger.getLogger(DemandProfile.class.getName()).log(
+                            Level.WARNING, "Skipping key: " + line, ex);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Formats one line of a profile.
+     * @param cache the cache that converts keys to parameters
+     * @param key the key
+     * @param count the number of objects
+     * @return the line or <code>null</code> if the key cannot be written
+     */
+    private static String format(ObjectCache cache, ObjectKey key, int count) {
+        ObjectCreator creator = cache.findCreator(key.getType().getName());
+        Object[] params = creator == null ? null : creator.toParams(key);
+
+        if (params == null) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(key.getType().getName()).append(' ').append(count);
+
+        for (Object p : params) {
+            String token = formatParam(p);
+            if (token == null) {
+                return null;
+            }
+            sb.append(' ').append(token);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Formats a typed parameter.
+     * @param p the parameter
+     * @return the token or <code>null</code> if the parameter type is not
+     *         supported
+     */
+    private static String formatParam(Object p) {
+        if (p instanceof Integer) {
+            return "int:" + p;
+        } else if (p instanceof Long) {
+            return "long:" + p;
+        } else if (p instanceof Double) {
+            return "double:" + p;
+        } else if (p instanceof Boolean) {
+            return "boolean:" + p;
+        }
+        return null;
+    }
+
+    /**
+     * Parses a typed parameter.
+     * @param token the token
+     * @return the parameter
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    private static Object parseParam(String token) {
+        int i = token.indexOf(':');
+
+        if (i < 0) {
+            throw new IllegalArgumentException("Untyped parameter: " + token);
+        }
+
+        String type = token.substring(0, i);
+        String value = token.substring(i + 1);
+
+        if (type.equals("int")) {
+            return Integer.valueOf(value);
+        } else if (type.equals("long")) {
+            return Long.valueOf(value);
+        } else if (type.equals("double")) {
+            return Double.valueOf(value);
+        } else if (type.equals("boolean") && (value.equals("true")
+                || value.equals("false"))) {
+            return Boolean.valueOf(value);
+        }
+
+        throw new IllegalArgumentException("Unsupported parameter: " + token);
+    }
+
+    /**
+     * Returns an exception that reports a malformed line.
+     * @param file the profile file
+     * @param lineNumber the line number
+     * @param line the line
+     * @return the exception
+     */
+    private static IOException malformed(File file, int lineNumber,
+            String line) {
+        return new IOException("Malformed profile " + file + " (line "
+                + lineNumber + "): " + line);
+    }
+}
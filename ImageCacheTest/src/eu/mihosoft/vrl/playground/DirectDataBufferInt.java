@@ -0,0 +1,207 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.image.DataBuffer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * <code>int</code> data buffer that stores its elements off-heap in a direct
+ * byte buffer. The elements are invisible to the garbage collector.
+ * </p>
+ * <p>
+ * Each access is registered while it is in progress. {@link #free()} waits
+ * for pending accesses before the memory is released, i.e., threads that
+ * still use the buffer never touch released memory.
+ * </p>
+ * <p>
+ * <b>Warning:</b> after {@link #free()} has been called any access to this
+ * buffer fails. Images that use this buffer must not be used anymore.
+ * </p>
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class DirectDataBufferInt extends DataBuffer {
+
+    // number of elements that are written per bulk operation
+    private static final int CHUNK_SIZE = 4096;
+    private static final int[] ZEROS = new int[CHUNK_SIZE];
+    private volatile ByteBuffer bytes;
+    private volatile IntBuffer data;
+    // number of accesses in progress
+    private final AtomicInteger accesses = new AtomicInteger();
+
+    /**
+     * Constructor.
+     * @param size the number of elements
+     */
+    public DirectDataBufferInt(int size) {
+        super(TYPE_INT, size);
+        bytes = ByteBuffer.allocateDirect(size * 4).order(
+                ByteOrder.nativeOrder());
+        data = bytes.asIntBuffer();
+    }
+
+    /**
+     * Registers an access and returns the elements. Every successful call
+     * must be followed by {@link #endAccess()}.
+     * @return the elements
+     * @throws IllegalStateException if this buffer has been freed
+     */
+    private IntBuffer beginAccess() {
+        // register first, i.e., free() either sees the access or this
+        // thread sees the detached buffer
+        accesses.incrementAndGet();
+
+        IntBuffer d = data;
+
+        if (d == null) {
+            accesses.decrementAndGet();
+            throw new IllegalStateException("Buffer has been freed!");
+        }
+
+        return d;
+    }
+
+    /**
+     * Ends an access.
+     */
+    private void endAccess() {
+        accesses.decrementAndGet();
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+        IntBuffer d = beginAccess();
+        try {
+            return d.get(i + offsets[bank]);
+        } finally {
+            endAccess();
+        }
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+        IntBuffer d = beginAccess();
+        try {
+            d.put(i + offsets[bank], val);
+        } finally {
+            endAccess();
+        }
+    }
+
+    /**
+     * Assigns a value to a range of elements.
+     * @param offset the index of the first element
+     * @param length the number of elements
+     * @param val the value to assign
+     */
+    public void fill(int offset, int length, int val) {
+        int[] chunk = ZEROS;
+
+        if (val != 0) {
+            chunk = new int[Math.min(length, CHUNK_SIZE)];
+            Arrays.fill(chunk, val);
+        }
+
+        IntBuffer d = beginAccess().duplicate();
+
+        try {
+            d.position(offset);
+
+            for (int remaining = length; remaining > 0;) {
+                int n = Math.min(remaining, chunk.length);
+                d.put(chunk, 0, n);
+                remaining -= n;
+            }
+        } finally {
+            endAccess();
+        }
+    }
+
+    /**
+     * Releases the off-heap memory of this buffer immediately instead of
+     * waiting for the garbage collector. Subsequent accesses fail with an
+     * <code>IllegalStateException</code>. Accesses that are in progress are
+     * completed before the memory is released.
+     */
+    public void free() {
+        ByteBuffer b;
+
+        synchronized (this) {
+            b = bytes;
+
+            if (b == null) {
+                return;
+            }
+
+            bytes = null;
+            data = null;
+        }
+
+        while (accesses.get() > 0) {
+            Thread.yield();
+        }
+
+        invokeCleaner(b);
+    }
+
+    /**
+     * Releases the memory of a direct byte buffer. If this is not supported
+     * by the JVM the memory is released by the garbage collector.
+     * @param b the buffer to release
+     */
+    private static void invokeCleaner(ByteBuffer b) {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field f = unsafeClass.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            Method m = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            m.invoke(f.get(null), b);
+        } catch (Exception ex) {
+            try {
+                // Java 8
+                Method cleanerMethod = b.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(b);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (Exception ex2) {
+                // leave it to the garbage collector
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.Point;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * <p>
+ * Creates BufferedImage objects whose rasters are stored off-heap (see
+ * {@link DirectDataBufferInt}). Pooled pixel memory is therefore invisible
+ * to the garbage collector. The memory is released as soon as an image is
+ * evicted from the cache (pending pixel accesses are completed first).
+ * </p>
+ * <p>
+ * Supported image types are <code>TYPE_INT_ARGB</code>,
+ * <code>TYPE_INT_ARGB_PRE</code> and <code>TYPE_INT_RGB</code>. Java2D
+ * renders into these images via generic (slower) loops.
+ * </p>
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class DirectImageCreator extends ImageCreator {
+
+    @Override
+    public ObjectEntry newInstance(ObjectKey key) {
+        ImageKey iKey = (ImageKey) key;
+        BufferedImage img = createImage(
+                iKey.getWidth(), iKey.getHeight(), iKey.getImageType());
+        return new ObjectEntry(img, key, sizeOf(img));
+    }
+
+    @Override
+    public void destroy(ObjectEntry oE) {
+        BufferedImage img = (BufferedImage) oE.getObject();
+        ((DirectDataBufferInt) img.getRaster().getDataBuffer()).free();
+    }
+
+    /**
+     * Creates an image with an off-heap raster.
+     * @param w the image width
+     * @param h the image height
+     * @param imageType the image type
+     * @return the image
+     */
+    public static BufferedImage createImage(int w, int h, int imageType) {
+        DirectColorModel cm;
+
+        switch (imageType) {
+            case BufferedImage.TYPE_INT_ARGB:
+                cm = new DirectColorModel(32,
+                        0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000);
+                break;
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                cm = new DirectColorModel(
+                        ColorSpace.getInstance(ColorSpace.CS_sRGB), 32,
+                        0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000,
+                        true, DataBuffer.TYPE_INT);
+                break;
+            case BufferedImage.TYPE_INT_RGB:
+                cm = new DirectColorModel(24,
+                        0x00ff0000, 0x0000ff00, 0x000000ff, 0);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "Unsupported image type: " + imageType);
+        }
+
+        SinglePixelPackedSampleModel sm = new SinglePixelPackedSampleModel(
+                DataBuffer.TYPE_INT, w, h, cm.getMasks());
+        WritableRaster raster = Raster.createWritableRaster(
+                sm, new DirectDataBufferInt(w * h), new Point(0, 0));
+
+        return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+    }
+}
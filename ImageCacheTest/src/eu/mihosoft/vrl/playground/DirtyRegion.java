@@ -0,0 +1,172 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+/**
+ * <p>
+ * Bounding box of the pixels that have been modified since an image has
+ * been checked out of an object cache. Reset hooks only have to clear this
+ * region.
+ * </p>
+ * <p>
+ * If no region has been declared during a checkout, the region is
+ * <i>untracked</i> and the whole image has to be considered dirty.
+ * </p>
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class DirtyRegion {
+
+    private boolean tracked;
+    private int x1;
+    private int y1;
+    private int x2;
+    private int y2;
+
+    /**
+     * Constructor. Creates an untracked region.
+     */
+    public DirtyRegion() {
+        reset();
+    }
+
+    /**
+     * Adds a rectangle to this region.
+     * @param x the x coordinate of the rectangle
+     * @param y the y coordinate of the rectangle
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     */
+    public void add(int x, int y, int w, int h) {
+        startTracking();
+
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+
+        x1 = Math.min(x1, x);
+        y1 = Math.min(y1, y);
+        x2 = (int) Math.max(x2, Math.min((long) x + w, Integer.MAX_VALUE));
+        y2 = (int) Math.max(y2, Math.min((long) y + h, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Adds the whole image to this region.
+     */
+    public void addAll() {
+        add(Integer.MIN_VALUE / 2, Integer.MIN_VALUE / 2,
+                Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Declares this region as tracked without adding pixels, i.e., only
+     * pixels that are added afterwards are considered dirty.
+     */
+    public void startTracking() {
+        tracked = true;
+    }
+
+    /**
+     * Declares that no pixel has been modified. Rectangles that are added
+     * afterwards are tracked as usual.
+     */
+    public void markClean() {
+        reset();
+        startTracking();
+    }
+
+    /**
+     * Indicates whether this region has been declared since the image has
+     * been checked out.
+     * @return <code>true</code> if this region has been declared;
+     *         <code>false</code> if the whole image has to be considered
+     *         dirty
+     */
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    /**
+     * Indicates whether this region is empty, i.e., whether no pixel has
+     * been modified. Untracked regions are never empty.
+     * @return <code>true</code> if this region is empty;
+     *         <code>false</code> otherwise
+     */
+    public boolean isEmpty() {
+        return tracked && (x1 >= x2 || y1 >= y2);
+    }
+
+    /**
+     * @return the x coordinate of the bounding box
+     */
+    public int getX() {
+        return x1;
+    }
+
+    /**
+     * @return the y coordinate of the bounding box
+     */
+    public int getY() {
+        return y1;
+    }
+
+    /**
+     * @return the width of the bounding box
+     */
+    public int getWidth() {
+        return Math.max(0, x2 - x1);
+    }
+
+    /**
+     * @return the height of the bounding box
+     */
+    public int getHeight() {
+        return Math.max(0, y2 - y1);
+    }
+
+    /**
+     * Resets this region to its initial (untracked) state.
+     */
+    void reset() {
+        tracked = false;
+        x1 = Integer.MAX_VALUE;
+        y1 = Integer.MAX_VALUE;
+        x2 = Integer.MIN_VALUE;
+        y2 = Integer.MIN_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        if (!tracked) {
+            return "DirtyRegion[untracked]";
+        }
+        return "DirtyRegion[" + getX() + ", " + getY() + ", "
+                + getWidth() + "x" + getHeight() + "]";
+    }
+}
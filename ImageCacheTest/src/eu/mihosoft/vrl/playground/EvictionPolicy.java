@@ -0,0 +1,71 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+/**
+ * Defines the order in which unused objects are evicted from an object
+ * cache.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public interface EvictionPolicy {
+
+    /**
+     * Compares two unused entries.
+     * @param oE1 the first entry
+     * @param oE2 the second entry
+     * @return a negative value if <code>oE1</code> should be evicted before
+     *         <code>oE2</code>, a positive value if <code>oE2</code> should be
+     *         evicted first and zero otherwise
+     */
+    int compare(ObjectEntry oE1, ObjectEntry oE2);
+
+    /**
+     * Selects the unused entry of one key that should be evicted first. The
+     * default implementation returns the minimum according to
+     * {@link #compare(eu.mihosoft.vrl.playground.ObjectEntry,
+     * eu.mihosoft.vrl.playground.ObjectEntry)}. Policies that can derive the
+     * victim from the return order override this method.
+     * @param unused the unused entries in the order in which they have been
+     *               returned (least recently returned first)
+     * @return the entry that should be evicted first or <code>null</code>
+     *         if no unused entry exists
+     */
+    default ObjectEntry selectVictim(Iterable<ObjectEntry> unused) {
+        ObjectEntry result = null;
+
+        for (ObjectEntry oE : unused) {
+            if (result == null || compare(oE, result) < 0) {
+                result = oE;
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps cached objects to their entries by reference identity. The index is
+ * split into independently locked stripes. Each stripe is a hash table that
+ * chains the entries themselves, i.e., the index does not hold references
+ * to the objects. Lookups do not allocate memory and do not depend on
+ * <code>equals()</code> or <code>hashCode()</code> of the cached objects.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class IdentityIndex {
+
+    private static final int NUM_STRIPES = 32;
+    private static final int STRIPE_BITS = 5;
+    private final Stripe[] stripes;
+
+    /**
+     * Constructor.
+     */
+    IdentityIndex() {
+        stripes = new Stripe[NUM_STRIPES];
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Spreads the bits of an identity hash code.
+     * @param h the identity hash code
+     * @return the spread hash code
+     */
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the stripe of the specified hash code.
+     * @param h the spread hash code
+     * @return the stripe of the specified hash code
+     */
+    private Stripe stripe(int h) {
+        return stripes[h & (NUM_STRIPES - 1)];
+    }
+
+    /**
+     * Adds an entry to this index.
+     * @param oE the entry to add
+     */
+    void put(ObjectEntry oE) {
+        int h = spread(oE.getIdentityHash());
+        Stripe s = stripe(h);
+        synchronized (s) {
+            s.put(oE, h >>> STRIPE_BITS);
+        }
+    }
+
+    /**
+     * Returns the entry of the specified object.
+     * @param o the object
+     * @return the entry of the specified object or <code>null</code> if the
+     *         object is not in this index
+     */
+    ObjectEntry get(Object o) {
+        int identityHash = System.identityHashCode(o);
+        int h = spread(identityHash);
+        Stripe s = stripe(h);
+        synchronized (s) {
+            ObjectEntry[] table = s.table;
+            ObjectEntry oE = table[(h >>> STRIPE_BITS) & (table.length - 1)];
+            while (oE != null) {
+                if (oE.getIdentityHash() == identityHash
+                        && oE.getObject() == o) {
+                    return oE;
+                }
+                oE = oE.indexNext;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Removes an entry from this index.
+     * @param oE the entry to remove
+     */
+    void remove(ObjectEntry oE) {
+        int h = spread(oE.getIdentityHash());
+        Stripe s = stripe(h);
+        synchronized (s) {
+            s.remove(oE, h >>> STRIPE_BITS);
+        }
+    }
+
+    /**
+     * @return all entries of this index
+     */
+    List<ObjectEntry> entries() {
+        List<ObjectEntry> result = new ArrayList<ObjectEntry>();
+
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                for (ObjectEntry oE : s.table) {
+                    for (; oE != null; oE = oE.indexNext) {
+                        result.add(oE);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Hash table of one stripe. Access is guarded by the stripe.
+     */
+    private static class Stripe {
+
+        private ObjectEntry[] table = new ObjectEntry[16];
+        private int size;
+
+        void put(ObjectEntry oE, int h) {
+            if (size >= table.length - (table.length >>> 2)) {
+                resize();
+            }
+            int i = h & (table.length - 1);
+            oE.indexNext = table[i];
+            table[i] = oE;
+            size++;
+        }
+
+        void remove(ObjectEntry oE, int h) {
+            int i = h & (table.length - 1);
+            ObjectEntry prev = null;
+            for (ObjectEntry e = table[i]; e != null; e = e.indexNext) {
+                if (e == oE) {
+                    if (prev == null) {
+                        table[i] = e.indexNext;
+                    } else {
+                        prev.indexNext = e.indexNext;
+                    }
+                    e.indexNext = null;
+                    size--;
+                    return;
+                }
+                prev = e;
+            }
+        }
+
+        void resize() {
+            ObjectEntry[] newTable = new ObjectEntry[table.length * 2];
+            for (ObjectEntry oE : table) {
+                while (oE != null) {
+                    ObjectEntry next = oE.indexNext;
+                    int i = (spread(oE.getIdentityHash()) >>> STRIPE_BITS)
+                            & (newTable.length - 1);
+                    oE.indexNext = newTable[i];
+                    newTable[i] = oE;
+                    oE = next;
+                }
+            }
+            table = newTable;
+        }
+    }
+}
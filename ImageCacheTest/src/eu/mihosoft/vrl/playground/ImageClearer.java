@@ -0,0 +1,221 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Clears images. Images with packed or interleaved rasters (e.g.
+ * <code>TYPE_INT_ARGB</code>, <code>TYPE_USHORT_565_RGB</code>,
+ * <code>TYPE_BYTE_GRAY</code> or <code>TYPE_4BYTE_ABGR</code>) are cleared
+ * by filling the backing array (or the off-heap buffer, see
+ * {@link DirectDataBufferInt}) directly which is much faster than using
+ * <code>Graphics2D</code>. Other image types (e.g. indexed images) are
+ * cleared via <code>AlphaComposite.Clear</code>.
+ * </p>
+ * <p>
+ * <b>Note:</b> accessing the backing array prevents Java2D from keeping an
+ * accelerated copy of the image.
+ * </p>
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ImageClearer implements ResetHook {
+
+    /**
+     * Clears the dirty region of the image of the specified entry. Images
+     * without modified pixels are not cleared at all.
+     * @param oE the entry of the image to clear
+     */
+    @Override
+    public void reset(ObjectEntry oE) {
+        clear((BufferedImage) oE.getObject(), oE.getDirtyRegion());
+    }
+
+    /**
+     * Clears the dirty region of an image. The whole image is cleared if the
+     * region is untracked.
+     * @param image the image to clear
+     * @param region the modified region of the image
+     */
+    public static void clear(BufferedImage image, DirtyRegion region) {
+        if (!region.isTracked()) {
+            clear(image);
+        } else if (!region.isEmpty()) {
+            clear(image, region.getX(), region.getY(),
+                    region.getWidth(), region.getHeight());
+        }
+    }
+
+    /**
+     * Clears an image.
+     * @param image the image to clear
+     */
+    public static void clear(BufferedImage image) {
+        clear(image, 0, 0, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Clears a region of an image. The region is clipped to the image
+     * bounds.
+     * @param image the image to clear
+     * @param x the x coordinate of the region
+     * @param y the y coordinate of the region
+     * @param w the width of the region
+     * @param h the height of the region
+     */
+    public static void clear(BufferedImage image, int x, int y, int w, int h) {
+        int x1 = Math.max(x, 0);
+        int y1 = Math.max(y, 0);
+        int x2 = (int) Math.min((long) x + w, image.getWidth());
+        int y2 = (int) Math.min((long) y + h, image.getHeight());
+
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+
+        // zero is not necessarily the transparent (or black) pixel of
+        // indexed images
+        if (image.getColorModel() instanceof IndexColorModel
+                || !clearRaster(image.getRaster(), x1, y1, x2 - x1, y2 - y1)) {
+            clearGraphics(image, x1, y1, x2 - x1, y2 - y1);
+        }
+    }
+
+    /**
+     * Clears a region of a raster by filling its backing array with zeros.
+     * Supported are rasters with one bank whose pixels are either packed
+     * into one element or stored in consecutive elements.
+     * @param raster the raster to clear
+     * @param x the x coordinate of the region
+     * @param y the y coordinate of the region
+     * @param w the width of the region
+     * @param h the height of the region
+     * @return <code>true</code> if the raster has been cleared;
+     *         <code>false</code> if the raster type is not supported
+     */
+    private static boolean clearRaster(
+            WritableRaster raster, int x, int y, int w, int h) {
+        DataBuffer buffer = raster.getDataBuffer();
+        SampleModel sm = raster.getSampleModel();
+
+        int stride;
+        int pixelStride;
+
+        if (sm instanceof SinglePixelPackedSampleModel) {
+            stride = ((SinglePixelPackedSampleModel) sm).getScanlineStride();
+            pixelStride = 1;
+        } else if (sm instanceof ComponentSampleModel
+                && buffer.getNumBanks() == 1
+                && ((ComponentSampleModel) sm).getPixelStride()
+                == sm.getNumBands()) {
+            stride = ((ComponentSampleModel) sm).getScanlineStride();
+            pixelStride = sm.getNumBands();
+        } else {
+            return false;
+        }
+
+        // subimages share the array of their parent and are translated
+        int offset = buffer.getOffset()
+                + (y - raster.getSampleModelTranslateY()) * stride
+                + (x - raster.getSampleModelTranslateX()) * pixelStride;
+
+        // rows are contiguous if the whole width is cleared
+        int rowLength = w * pixelStride;
+        int numRows = h;
+
+        if (rowLength == stride) {
+            rowLength *= h;
+            numRows = 1;
+        }
+
+        if (buffer instanceof DataBufferInt) {
+            int[] data = ((DataBufferInt) buffer).getData();
+            for (int i = 0; i < numRows; i++) {
+                Arrays.fill(data, offset, offset + rowLength, 0);
+                offset += stride;
+            }
+        } else if (buffer instanceof DataBufferByte) {
+            byte[] data = ((DataBufferByte) buffer).getData();
+            for (int i = 0; i < numRows; i++) {
+                Arrays.fill(data, offset, offset + rowLength, (byte) 0);
+                offset += stride;
+            }
+        } else if (buffer instanceof DataBufferUShort) {
+            short[] data = ((DataBufferUShort) buffer).getData();
+            for (int i = 0; i < numRows; i++) {
+                Arrays.fill(data, offset, offset + rowLength, (short) 0);
+                offset += stride;
+            }
+        } else if (buffer instanceof DirectDataBufferInt) {
+            DirectDataBufferInt data = (DirectDataBufferInt) buffer;
+            for (int i = 0; i < numRows; i++) {
+                data.fill(offset, rowLength, 0);
+                offset += stride;
+            }
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Clears a region of an image via <code>Graphics2D</code>.
+     * @param image the image to clear
+     * @param x the x coordinate of the region
+     * @param y the y coordinate of the region
+     * @param w the width of the region
+     * @param h the height of the region
+     */
+    private static void clearGraphics(
+            BufferedImage image, int x, int y, int w, int h) {
+        Graphics2D g2 = image.createGraphics();
+
+        try {
+            g2.setComposite(AlphaComposite.Clear);
+            g2.fillRect(x, y, w, h);
+        } finally {
+            g2.dispose();
+        }
+    }
+}
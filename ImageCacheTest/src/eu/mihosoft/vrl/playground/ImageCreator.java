@@ -29,40 +29,176 @@
 package eu.mihosoft.vrl.playground;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PackedColorModel;
 
 /**
- * Creates BufferedImage objects.
+ * Creates BufferedImage objects of all predefined image types and of
+ * arbitrary color models (see {@link ImageKey}).
  * @author Michael Hoffer <info@michaelhoffer.de>
  */
 public class ImageCreator extends ObjectCreator {
 
+    private final int defaultImageType;
+
     /**
-     * Constructor.
+     * Constructor. Images that are requested without image type are of type
+     * <code>TYPE_INT_ARGB</code>.
      */
     public ImageCreator() {
+        this(BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Constructor.
+     * @param defaultImageType the type of images that are requested without
+     *                         image type
+     */
+    public ImageCreator(int defaultImageType) {
         setType(BufferedImage.class);
+        this.defaultImageType = defaultImageType;
+    }
+
+    /**
+     * @return the type of images that are requested without image type
+     */
+    public int getDefaultImageType() {
+        return defaultImageType;
     }
 
     @Override
-    public ObjectEntry newInstance(Object... params) {
+    public ObjectKey createKey(Object... params) {
 
-        if (params.length != 2) {
+        if (params.length != 2 && params.length != 3) {
             throw new IllegalArgumentException(
-                    "Wrong number of arguments! Supported: int, int");
+                    "Wrong number of arguments! Supported: int, int [, int]");
         }
 
         Integer w = 0;
         Integer h = 0;
+        Integer type = defaultImageType;
 
         try {
             w = (Integer) params[0];
             h = (Integer) params[1];
+            if (params.length == 3) {
+                type = (Integer) params[2];
+            }
         } catch (Exception ex) {
             throw new IllegalArgumentException(
-                    "Wrong argument type! Supported: int, int");
+                    "Wrong argument type! Supported: int, int [, int]");
+        }
+        return new ImageKey(w, h, type);
+    }
+
+    /**
+     * Converts an image key back to its width, height and image type. Keys
+     * that are specified by a color model cannot be converted.
+     * @param key the image key
+     * @return the creation parameters or <code>null</code> if the key is
+     *         specified by a color model
+     */
+    @Override
+    public Object[] toParams(ObjectKey key) {
+        ImageKey iKey = (ImageKey) key;
+
+        if (iKey.getColorModel() != null) {
+            return null;
+        }
+
+        return new Object[]{
+            iKey.getWidth(), iKey.getHeight(), iKey.getImageType()};
+    }
+
+    @Override
+    public ObjectEntry newInstance(ObjectKey key) {
+        ImageKey iKey = (ImageKey) key;
+        ColorModel cm = iKey.getColorModel();
+        BufferedImage img;
+
+        if (cm == null) {
+            img = new BufferedImage(
+                    iKey.getWidth(), iKey.getHeight(), iKey.getImageType());
+        } else {
+            // the image type is detected if the format is predefined
+            img = new BufferedImage(cm, cm.createCompatibleWritableRaster(
+                    iKey.getWidth(), iKey.getHeight()),
+                    cm.isAlphaPremultiplied(), null);
+        }
+
+        return new ObjectEntry(img, key, sizeOf(img));
+    }
+
+    /**
+     * Estimates the raster size from the number of bits per pixel. Padding
+     * of the rows is only considered for pixels that are smaller than one
+     * byte.
+     * @param key the image key
+     * @return the estimated raster size (in bytes) or <code>-1</code> if
+     *         the image type is unknown
+     */
+    @Override
+    public long estimateSize(ObjectKey key) {
+        ImageKey iKey = (ImageKey) key;
+        ColorModel cm = iKey.getColorModel();
+        int bits;
+
+        if (cm == null) {
+            bits = bitsPerPixel(iKey.getImageType());
+        } else if (cm instanceof PackedColorModel) {
+            // packed pixels occupy a whole data element
+            bits = DataBuffer.getDataTypeSize(cm.getTransferType());
+        } else {
+            bits = cm.getPixelSize();
+        }
+
+        if (bits < 0) {
+            return -1;
         }
-        return new ObjectEntry(
-                new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB),
-                params);
+
+        return ((long) iKey.getWidth() * bits + 7) / 8 * iKey.getHeight();
+    }
+
+    /**
+     * Returns the number of bits per pixel of a predefined image type.
+     * @param imageType the image type
+     * @return the number of bits per pixel or <code>-1</code> if the image
+     *         type is unknown
+     */
+    private static int bitsPerPixel(int imageType) {
+        switch (imageType) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_INT_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                return 32;
+            case BufferedImage.TYPE_3BYTE_BGR:
+                return 24;
+            case BufferedImage.TYPE_USHORT_565_RGB:
+            case BufferedImage.TYPE_USHORT_555_RGB:
+            case BufferedImage.TYPE_USHORT_GRAY:
+                return 16;
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_BYTE_INDEXED:
+                return 8;
+            case BufferedImage.TYPE_BYTE_BINARY:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Returns the memory size of the raster of the specified image.
+     * @param img the image
+     * @return the memory size of the raster (in bytes)
+     */
+    public static long sizeOf(BufferedImage img) {
+        DataBuffer buffer = img.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+                * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
     }
 }
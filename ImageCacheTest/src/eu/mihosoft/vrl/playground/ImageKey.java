@@ -0,0 +1,234 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+
+/**
+ * Object key for <code>BufferedImage</code> objects. Images are specified
+ * either by a predefined image type or by a color model (e.g. the color
+ * model of a graphics configuration or of an indexed image). Lookups with
+ * keys of predefined types only compare primitive fields and do not
+ * allocate memory. Indexed color models are compared by their palette since
+ * <code>IndexColorModel.equals()</code> ignores it on older JVMs.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class ImageKey extends ObjectKey {
+
+    private final int width;
+    private final int height;
+    private final int imageType;
+    private final ColorModel colorModel;
+    // palette of indexed color models (null otherwise)
+    private final int[] palette;
+    private final int paletteHash;
+
+    /**
+     * Constructor.
+     * @param width the image width
+     * @param height the image height
+     * @param imageType the image type, e.g.,
+     *                  <code>BufferedImage.TYPE_INT_ARGB</code>
+     */
+    public ImageKey(int width, int height, int imageType) {
+        this.width = width;
+        this.height = height;
+        this.imageType = imageType;
+        this.colorModel = null;
+        this.palette = null;
+        this.paletteHash = 0;
+    }
+
+    /**
+     * Constructor. The images are created with a raster that is compatible
+     * with the specified color model. The image type of this key is
+     * <code>TYPE_CUSTOM</code>.
+     * @param width the image width
+     * @param height the image height
+     * @param colorModel the color model
+     */
+    public ImageKey(int width, int height, ColorModel colorModel) {
+        if (colorModel == null) {
+            throw new IllegalArgumentException("Color model must not be null!");
+        }
+        this.width = width;
+        this.height = height;
+        this.imageType = BufferedImage.TYPE_CUSTOM;
+        this.colorModel = colorModel;
+
+        if (colorModel instanceof IndexColorModel) {
+            IndexColorModel icm = (IndexColorModel) colorModel;
+            palette = new int[icm.getMapSize()];
+            icm.getRGBs(palette);
+            paletteHash = 31 * (31 * Arrays.hashCode(palette)
+                    + icm.getTransparency()) + icm.getTransparentPixel();
+        } else {
+            palette = null;
+            paletteHash = 0;
+        }
+    }
+
+    /**
+     * Returns a key for images that are compatible with a graphics
+     * configuration, i.e., images that can be drawn without format
+     * conversion (see
+     * <code>GraphicsConfiguration.createCompatibleImage()</code>).
+     * @param gc the graphics configuration
+     * @param width the image width
+     * @param height the image height
+     * @param transparency the transparency, e.g.,
+     *                     <code>Transparency.TRANSLUCENT</code>
+     * @return the key
+     */
+    public static ImageKey compatible(GraphicsConfiguration gc,
+            int width, int height, int transparency) {
+        return new ImageKey(width, height, gc.getColorModel(transparency));
+    }
+
+    /**
+     * Returns a key for images that have the same format as the specified
+     * image. Predefined image types are used if possible. Indexed images are
+     * specified by their color model since images of the same type can
+     * differ in their palette.
+     * @param image the image
+     * @param width the image width
+     * @param height the image height
+     * @return the key
+     */
+    public static ImageKey compatible(BufferedImage image,
+            int width, int height) {
+        int type = image.getType();
+
+        if (type == BufferedImage.TYPE_CUSTOM
+                || image.getColorModel() instanceof IndexColorModel) {
+            return new ImageKey(width, height, image.getColorModel());
+        }
+
+        return new ImageKey(width, height, type);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return BufferedImage.class;
+    }
+
+    /**
+     * @return the image width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the image height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the image type (<code>TYPE_CUSTOM</code> if the images are
+     *         specified by a color model)
+     */
+    public int getImageType() {
+        return imageType;
+    }
+
+    /**
+     * @return the color model or <code>null</code> if the images are
+     *         specified by a predefined image type
+     */
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageKey)) {
+            return false;
+        }
+        ImageKey other = (ImageKey) o;
+        return width == other.width && height == other.height
+                && imageType == other.imageType
+                && (colorModel == null ? other.colorModel == null
+                : colorModel.equals(other.colorModel)
+                && samePalette(other));
+    }
+
+    /**
+     * Compares the palettes of two keys whose color models are equal
+     * according to <code>ColorModel.equals()</code>.
+     * @param other the other key
+     * @return <code>true</code> if both keys have the same palette or no
+     *         palette; <code>false</code> otherwise
+     */
+    private boolean samePalette(ImageKey other) {
+        if (palette == null || other.palette == null) {
+            return palette == other.palette;
+        }
+
+        IndexColorModel icm = (IndexColorModel) colorModel;
+        IndexColorModel otherIcm = (IndexColorModel) other.colorModel;
+
+        return paletteHash == other.paletteHash
+                && icm.getTransparency() == otherIcm.getTransparency()
+                && icm.getTransparentPixel() == otherIcm.getTransparentPixel()
+                && Arrays.equals(palette, other.palette);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = width;
+        result = 31 * result + height;
+        result = 31 * result + imageType;
+        if (colorModel != null) {
+            result = 31 * result + colorModel.hashCode();
+            result = 31 * result + paletteHash;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if (colorModel != null) {
+            return "ImageKey[" + width + "x" + height + ", colorModel="
+                    + colorModel.getClass().getSimpleName() + "@"
+                    + Integer.toHexString(colorModel.hashCode()) + "]";
+        }
+        return "ImageKey[" + width + "x" + height + ", type=" + imageType + "]";
+    }
+}
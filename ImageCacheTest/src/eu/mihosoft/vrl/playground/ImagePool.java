@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Type-safe pool of images with primitive entry points. Image keys are
+ * interned, i.e., {@link #acquire(int, int, int)} does neither box its
+ * arguments nor allocate a key if the requested size has been used
+ * recently.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ImagePool extends Pool<BufferedImage, ImageKey> {
+
+    private static final int NUM_KEYS = 64;
+    private final AtomicReferenceArray<ImageKey> keys =
+            new AtomicReferenceArray<ImageKey>(NUM_KEYS);
+
+    /**
+     * Constructor.
+     * @param cache the cache (an image creator must be registered)
+     */
+    public ImagePool(ObjectCache cache) {
+        super(cache, BufferedImage.class);
+    }
+
+    /**
+     * Returns an image of the specified size and type.
+     * @param w the image width
+     * @param h the image height
+     * @param imageType the image type, e.g.,
+     *                  <code>BufferedImage.TYPE_INT_ARGB</code>
+     * @return an image of the specified size and type
+     * @throws ClassNotSupportedException if no image creator has been
+     *         registered
+     */
+    public BufferedImage acquire(int w, int h, int imageType)
+            throws ClassNotSupportedException {
+        return acquire(key(w, h, imageType));
+    }
+
+    /**
+     * Returns a handle of an image of the specified size and type. Closing
+     * the handle returns the image.
+     * @param w the image width
+     * @param h the image height
+     * @param imageType the image type, e.g.,
+     *                  <code>BufferedImage.TYPE_INT_ARGB</code>
+     * @return a handle of an image of the specified size and type
+     * @throws ClassNotSupportedException if no image creator has been
+     *         registered
+     */
+    public ObjectHandle<BufferedImage> acquireHandle(int w, int h,
+            int imageType) throws ClassNotSupportedException {
+        return acquireHandle(key(w, h, imageType));
+    }
+
+    /**
+     * Returns an interned key. Keys are stored in a direct-mapped table,
+     * i.e., a new key is only created if the slot of the requested key is
+     * empty or contains another key.
+     * @param w the image width
+     * @param h the image height
+     * @param imageType the image type
+     * @return the key
+     */
+    ImageKey key(int w, int h, int imageType) {
+        int hash = (w * 31 + h) * 31 + imageType;
+        int slot = (hash ^ (hash >>> 16)) & (NUM_KEYS - 1);
+
+        ImageKey key = keys.get(slot);
+
+        if (key == null || key.getWidth() != w || key.getHeight() != h
+                || key.getImageType() != imageType) {
+            key = new ImageKey(w, h, imageType);
+            keys.set(slot, key);
+        }
+
+        return key;
+    }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Free list of one object key. The free list and the counters are
+ * non-blocking, i.e., threads that request and return objects of the same
+ * key do not serialize on a lock. Only threads that wait for an entry
+ * synchronize. Waiters are queued in FIFO order. Returned entries are handed
+ * to the oldest waiter after they have been added to the free list, i.e., a
+ * thread that requests an object at the same time may take the entry first.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class KeyPool {
+
+    // every n-th disposed object is handled contrary to the reuse decision,
+    // i.e., the costs of both options are still sampled
+    private static final int SAMPLING_INTERVAL = 64;
+    private final ObjectKey key;
+    private final ConcurrentLinkedDeque<ObjectEntry> free =
+            new ConcurrentLinkedDeque<ObjectEntry>();
+    // number of entries in the free list (including entries that have been
+    // claimed by another thread but not been removed yet)
+    private final AtomicInteger numFree = new AtomicInteger();
+    // guarded by this
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<Waiter>();
+    private volatile int numWaiters;
+    private final StatisticsRecorder statistics = new StatisticsRecorder();
+    private final AtomicInteger live = new AtomicInteger();
+    private final AtomicInteger minFree = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger peak = new AtomicInteger();
+    private volatile ReuseDecision reuseDecision;
+    private final AtomicInteger numDecisions = new AtomicInteger();
+    // unused entries of the free list, least recently returned first
+    private final Iterable<ObjectEntry> unused = new Iterable<ObjectEntry>() {
+
+        public Iterator<ObjectEntry> iterator() {
+            return new UnusedIterator(free.iterator());
+        }
+    };
+
+    /**
+     * Constructor.
+     * @param key the key of this pool
+     */
+    KeyPool(ObjectKey key) {
+        this.key = key;
+    }
+
+    /**
+     * @return the key of this pool
+     */
+    ObjectKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return the statistics of this pool
+     */
+    StatisticsRecorder getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns an unused entry and marks it as used. Entries that have been
+     * claimed by another thread in the meantime (e.g. for eviction) are
+     * dropped from the free list.
+     * @return an unused entry or <code>null</code> if no such entry exists
+     */
+    ObjectEntry poll() {
+        ObjectEntry oE = pollFree();
+        int n = numFree.get();
+        lower(minFree, n);
+        raise(peak, live.get() - n);
+        return oE;
+    }
+
+    /**
+     * Returns up to <code>n</code> unused entries and marks them as used.
+     * @param n the maximum number of entries
+     * @param result the list that receives the entries
+     */
+    void pollAll(int n, List<ObjectEntry> result) {
+        ObjectEntry oE;
+        int count = 0;
+        while (count < n && (oE = pollFree()) != null) {
+            result.add(oE);
+            count++;
+        }
+        int numF = numFree.get();
+        lower(minFree, numF);
+        raise(peak, live.get() - numF);
+    }
+
+    /**
+     * Removes the most recently returned unused entry from the free list and
+     * marks it as used.
+     * @return an unused entry or <code>null</code> if no such entry exists
+     */
+    private ObjectEntry pollFree() {
+        ObjectEntry oE;
+        while ((oE = free.pollLast()) != null) {
+            numFree.decrementAndGet();
+            if (oE.tryAcquire()) {
+                return oE;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds an unused entry to the free list and hands unused entries to
+     * waiting threads.
+     * @param oE the entry to add
+     * @return <code>true</code> if an entry has been handed to a waiter;
+     *         <code>false</code> otherwise
+     */
+    boolean offer(ObjectEntry oE) {
+        free.addLast(oE);
+        numFree.incrementAndGet();
+        return numWaiters > 0 && handOff();
+    }
+
+    /**
+     * Adds unused entries to the free list and hands unused entries to
+     * waiting threads.
+     * @param entries the entries to add
+     * @param n the number of entries to add
+     */
+    void offerAll(ObjectEntry[] entries, int n) {
+        for (int i = 0; i < n; i++) {
+            free.addLast(entries[i]);
+        }
+        numFree.addAndGet(n);
+        if (numWaiters > 0) {
+            handOff();
+        }
+    }
+
+    /**
+     * Hands unused entries to the oldest waiters. The entries are marked as
+     * used. Waiters register before they poll the free list a last time and
+     * returning threads call this method after they have added an entry,
+     * i.e., no entry is missed.
+     * @return <code>true</code> if an entry has been handed to a waiter;
+     *         <code>false</code> otherwise
+     */
+    private synchronized boolean handOff() {
+        boolean result = false;
+
+        while (!waiters.isEmpty()) {
+            ObjectEntry oE = pollFree();
+
+            if (oE == null) {
+                break;
+            }
+
+            Waiter w = waiters.pollFirst();
+            numWaiters--;
+            w.entry = oE;
+            result = true;
+        }
+
+        if (result) {
+            notifyAll();
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits for an unused entry. The method returns early without an entry if
+     * the waiter is signalled (see {@link #signal()}) or if the thread is
+     * interrupted. The interrupt status is preserved.
+     * @param nanos the maximum time to wait (in nanoseconds)
+     * @param first defines whether to wait in front of all other waiters
+     *              (used by threads that have been signalled already)
+     * @return an entry that has been marked as used or <code>null</code> if
+     *         no entry has been received
+     */
+    synchronized ObjectEntry await(long nanos, boolean first) {
+        ObjectEntry oE = poll();
+
+        if (oE != null) {
+            return oE;
+        }
+
+        Waiter w = new Waiter();
+
+        if (first) {
+            waiters.addFirst(w);
+        } else {
+            waiters.addLast(w);
+        }
+        numWaiters++;
+
+        // entries that have been returned before the waiter was visible
+        handOff();
+
+        long deadline = System.nanoTime() + nanos;
+
+        try {
+            while (w.entry == null && !w.signalled) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (w.entry == null && !w.signalled) {
+            waiters.remove(w);
+            numWaiters--;
+        }
+
+        return w.entry;
+    }
+
+    /**
+     * Wakes the oldest waiter, e.g., because a live object has been removed
+     * and the waiter may create a new one.
+     * @return <code>true</code> if a waiter has been signalled;
+     *         <code>false</code> if no thread is waiting
+     */
+    boolean signal() {
+        if (numWaiters == 0) {
+            return false;
+        }
+
+        synchronized (this) {
+            Waiter w = waiters.pollFirst();
+
+            if (w == null) {
+                return false;
+            }
+
+            numWaiters--;
+            w.signalled = true;
+            notifyAll();
+
+            return true;
+        }
+    }
+
+    /**
+     * Counts a new live object if the limit has not been reached.
+     * @param max the maximum number of live objects of this key
+     * @return <code>true</code> if the object has been counted;
+     *         <code>false</code> if the limit has been reached
+     */
+    boolean tryReserve(int max) {
+        while (true) {
+            int n = live.get();
+            if (n >= max) {
+                return false;
+            }
+            if (live.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Counts a new live object regardless of the limit.
+     */
+    void reserve() {
+        live.incrementAndGet();
+    }
+
+    /**
+     * Counts a removed live object.
+     */
+    void unreserve() {
+        live.decrementAndGet();
+    }
+
+    /**
+     * Returns the maximum number of live objects that have been in use at the
+     * same time since the last call of this method (approximated by the
+     * minimum length of the free list).
+     * @return the maximum number of objects in use
+     */
+    int sampleDemand() {
+        int n = numFree.get();
+        int demand = live.get() - Math.min(minFree.getAndSet(n), n);
+        return Math.max(demand, 0);
+    }
+
+    /**
+     * Records the number of objects in use after a new object has been
+     * checked out.
+     */
+    void updatePeak() {
+        raise(peak, live.get() - numFree.get());
+    }
+
+    /**
+     * Returns the maximum number of objects that have been in use at the same
+     * time since this pool has been created.
+     * @return the maximum number of objects in use
+     */
+    int getPeak() {
+        return peak.get();
+    }
+
+    /**
+     * @return the current reuse decision or <code>null</code> if no decision
+     *         has been made (objects are reused in this case)
+     */
+    ReuseDecision getReuseDecision() {
+        return reuseDecision;
+    }
+
+    /**
+     * @param reuseDecision the reuse decision (<code>null</code> means that
+     *                      objects are reused)
+     */
+    void setReuseDecision(ReuseDecision reuseDecision) {
+        this.reuseDecision = reuseDecision;
+    }
+
+    /**
+     * Indicates whether a disposed object should be dropped instead of being
+     * reset and reused, according to the current reuse decision. Every
+     * n-th object is handled contrary to the decision.
+     * @return <code>true</code> if the object should be dropped;
+     *         <code>false</code> otherwise
+     */
+    boolean shouldDrop() {
+        ReuseDecision d = reuseDecision;
+
+        if (d == null) {
+            return false;
+        }
+
+        boolean sample =
+                numDecisions.incrementAndGet() % SAMPLING_INTERVAL == 0;
+
+        return d.isReuse() == sample;
+    }
+
+    /**
+     * @return the number of live objects of this key, including objects that
+     *         are in use
+     */
+    int getLive() {
+        return live.get();
+    }
+
+    /**
+     * Removes an entry from the free list.
+     * @param oE the entry to remove
+     */
+    void remove(ObjectEntry oE) {
+        if (free.removeFirstOccurrence(oE)) {
+            numFree.decrementAndGet();
+        }
+    }
+
+    /**
+     * Claims all unused entries except the most recently returned ones for
+     * eviction.
+     * @param keep the number of unused entries to keep
+     * @param victims the list that receives the claimed entries
+     */
+    void trim(int keep, List<ObjectEntry> victims) {
+        while (numFree.get() > keep) {
+            // the oldest entries are at the head of the free list
+            ObjectEntry oE = free.pollFirst();
+            if (oE == null) {
+                break;
+            }
+            numFree.decrementAndGet();
+            if (oE.tryEvict()) {
+                victims.add(oE);
+            }
+        }
+    }
+
+    /**
+     * Returns the unused entry that should be evicted first.
+     * @param policy the eviction policy
+     * @return the unused entry that should be evicted first or
+     *         <code>null</code> if no unused entry exists
+     */
+    ObjectEntry selectVictim(EvictionPolicy policy) {
+        return policy.selectVictim(unused);
+    }
+
+    /**
+     * @return the number of entries in the free list
+     */
+    int size() {
+        return numFree.get();
+    }
+
+    /**
+     * Lowers a counter to the specified value.
+     * @param counter the counter
+     * @param value the value
+     */
+    private static void lower(AtomicInteger counter, int value) {
+        int n;
+        while ((n = counter.get()) > value
+                && !counter.compareAndSet(n, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Raises a counter to the specified value.
+     * @param counter the counter
+     * @param value the value
+     */
+    private static void raise(AtomicInteger counter, int value) {
+        int n;
+        while ((n = counter.get()) < value
+                && !counter.compareAndSet(n, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Iterates over the entries of the free list that have not been claimed
+     * by another thread.
+     */
+    private static class UnusedIterator implements Iterator<ObjectEntry> {
+
+        private final Iterator<ObjectEntry> entries;
+        private ObjectEntry next;
+
+        UnusedIterator(Iterator<ObjectEntry> entries) {
+            this.entries = entries;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && entries.hasNext()) {
+                ObjectEntry oE = entries.next();
+                if (oE.getState() == ObjectEntry.FREE) {
+                    next = oE;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public ObjectEntry next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            ObjectEntry result = next;
+            advance();
+            return result;
+        }
+    }
+
+    /**
+     * A thread that waits for an entry.
+     */
+    private static class Waiter {
+
+        private ObjectEntry entry;
+        private boolean signalled;
+    }
+}
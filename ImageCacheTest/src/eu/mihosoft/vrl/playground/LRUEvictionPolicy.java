@@ -0,0 +1,62 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.Iterator;
+
+/**
+ * Evicts the least recently used entry first. Subclasses that change the
+ * order (see {@link #compare(eu.mihosoft.vrl.playground.ObjectEntry,
+ * eu.mihosoft.vrl.playground.ObjectEntry)}) must also override
+ * {@link #selectVictim(java.lang.Iterable)}.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class LRUEvictionPolicy implements EvictionPolicy {
+
+    @Override
+    public int compare(ObjectEntry oE1, ObjectEntry oE2) {
+        // nanoTime values must be compared via their difference
+        long diff = oE1.getLastUsed() - oE2.getLastUsed();
+        return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+    }
+
+    /**
+     * Returns the least recently returned entry without comparing entries.
+     * @param unused the unused entries in the order in which they have been
+     *               returned (least recently returned first)
+     * @return the entry that should be evicted first or <code>null</code>
+     *         if no unused entry exists
+     */
+    @Override
+    public ObjectEntry selectVictim(Iterable<ObjectEntry> unused) {
+        Iterator<ObjectEntry> it = unused.iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+/**
+ * Snapshot of a latency histogram. Bucket <code>i</code> counts latencies
+ * in the range <code>[2^(i-1), 2^i)</code> nanoseconds, i.e., percentiles
+ * are accurate up to a factor of two.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Number of buckets.
+     */
+    static final int NUM_BUCKETS = 64;
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+
+    /**
+     * Constructor.
+     * @param counts the bucket counts
+     * @param sum the sum of all latencies (in nanoseconds)
+     */
+    LatencyHistogram(long[] counts, long sum) {
+        this.counts = counts.clone();
+        this.sum = sum;
+
+        long n = 0;
+        for (long c : counts) {
+            n += c;
+        }
+        this.count = n;
+    }
+
+    /**
+     * Returns the bucket of the specified latency.
+     * @param nanos the latency (in nanoseconds)
+     * @return the bucket index
+     */
+    static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * @return the number of recorded latencies
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean latency (in nanoseconds)
+     */
+    public long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @return the median latency (in nanoseconds)
+     */
+    public long getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile (in nanoseconds)
+     */
+    public long get99thPercentile() {
+        return getPercentile(99);
+    }
+
+    /**
+     * Returns the specified percentile. The value is the upper bound of the
+     * bucket that contains the percentile.
+     * @param p the percentile (between 0 and 100)
+     * @return the specified percentile (in nanoseconds)
+     */
+    public long getPercentile(double p) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * p / 100);
+        long n = 0;
+
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            n += counts[i];
+            if (n >= rank && counts[i] > 0) {
+                return i == 0 ? 0 : (i == 63 ? Long.MAX_VALUE : 1L << i);
+            }
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the sum of this histogram and another histogram.
+     * @param other the other histogram
+     * @return the sum of both histograms
+     */
+    public LatencyHistogram plus(LatencyHistogram other) {
+        long[] result = counts.clone();
+
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            result[i] += other.counts[i];
+        }
+
+        return new LatencyHistogram(result, sum + other.sum);
+    }
+
+    @Override
+    public String toString() {
+        return "[count=" + count + ", mean=" + getMean() + "ns, median<="
+                + getMedian() + "ns, p99<=" + get99thPercentile() + "ns]";
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the leases of checked out objects. A daemon thread waits for leases
+ * whose objects became unreachable without being disposed and reclaims (and
+ * reports) their entries, i.e., the thread only wakes up if an object has
+ * been leaked. Objects that are held longer than a threshold are reported on
+ * demand, since this requires a scan of all entries. Stack traces of
+ * checkouts are sampled, i.e., only every n-th checkout (on average) pays for
+ * capturing its stack trace.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class LeakDetector implements Runnable {
+
+    private final ObjectCache cache;
+    private final ReferenceQueue<Object> queue;
+    private final long threshold;
+    private final int samplingInterval;
+    private final Thread thread;
+    private volatile boolean stopped;
+
+    /**
+     * Constructor.
+     * @param cache the cache
+     * @param queue the queue of leases whose objects became unreachable
+     * @param threshold the time after which held objects are reported (in
+     *                  nanoseconds)
+     * @param samplingInterval a stack trace is captured for every n-th
+     *                         checkout on average (no stack traces are
+     *                         captured if this value is zero)
+     */
+    LeakDetector(ObjectCache cache, ReferenceQueue<Object> queue,
+            long threshold, int samplingInterval) {
+        this.cache = cache;
+        this.queue = queue;
+        this.threshold = threshold;
+        this.samplingInterval = samplingInterval;
+
+        thread = new DaemonThreadFactory("ObjectCache-Leaks-").newThread(this);
+        thread.start();
+    }
+
+    /**
+     * Creates a lease for an object that is checked out.
+     * @param oE the entry of the object
+     * @param o the object
+     * @return the lease
+     */
+    Lease lease(ObjectEntry oE, Object o) {
+        Throwable site = null;
+
+        if (samplingInterval > 0 && ThreadLocalRandom.current().nextInt(
+                samplingInterval) == 0) {
+            site = new Throwable("Checkout of " + oE.getKey());
+        }
+
+        return new Lease(o, queue, oE, site);
+    }
+
+    public void run() {
+        while (!stopped) {
+            try {
+                Reference<?> r = queue.remove();
+                while (r != null) {
+                    cache.reclaim((Lease) r);
+                    r = queue.poll();
+                }
+            } catch (InterruptedException ex) {
+                // stopped
+            } catch (RuntimeException ex) {
+                Logger.getLogger(LeakDetector.class.getName()).log(
+                        Level.SEVERE, "Cannot track leases", ex);
+            }
+        }
+    }
+
+    /**
+     * Reports objects that are held longer than the threshold. Each lease is
+     * reported only once. This scans all entries of the cache.
+     */
+    void report() {
+        long now = System.nanoTime();
+
+        for (Lease l : cache.getLeaseList()) {
+            if (now - l.getCheckoutTime() >= threshold && l.markReported()) {
+                Logger.getLogger(LeakDetector.class.getName()).log(
+                        Level.WARNING, "Possible leak: {0}", l.toInfo());
+            }
+        }
+    }
+
+    /**
+     * Stops the tracking thread. Leases of objects that are checked out
+     * remain valid.
+     */
+    void shutdown() {
+        stopped = true;
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Checkout of an object whose lease is tracked. The lease refers to the
+ * object weakly and is enqueued if the object becomes unreachable before it
+ * is disposed.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class Lease extends WeakReference<Object> {
+
+    private final ObjectEntry entry;
+    private final long checkoutTime = System.nanoTime();
+    private final Throwable site;
+    private volatile boolean reported;
+
+    /**
+     * Constructor.
+     * @param o the leased object
+     * @param queue the queue of leases whose objects became unreachable
+     * @param entry the entry of the object
+     * @param site the checkout site or <code>null</code> if no stack trace
+     *             has been sampled
+     */
+    Lease(Object o, ReferenceQueue<Object> queue, ObjectEntry entry,
+            Throwable site) {
+        super(o, queue);
+        this.entry = entry;
+        this.site = site;
+    }
+
+    /**
+     * @return the entry of the leased object
+     */
+    ObjectEntry getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return the checkout time (see <code>System.nanoTime()</code>)
+     */
+    long getCheckoutTime() {
+        return checkoutTime;
+    }
+
+    /**
+     * @return the checkout site or <code>null</code> if no stack trace has
+     *         been sampled
+     */
+    Throwable getSite() {
+        return site;
+    }
+
+    /**
+     * Marks this lease as reported.
+     * @return <code>true</code> if the lease has not been reported before;
+     *         <code>false</code> otherwise
+     */
+    boolean markReported() {
+        if (reported) {
+            return false;
+        }
+        reported = true;
+        return true;
+    }
+
+    /**
+     * @return information about this lease
+     */
+    LeaseInfo toInfo() {
+        return new LeaseInfo(entry.getKey(),
+                System.nanoTime() - checkoutTime,
+                site == null ? null : callerFrames(site));
+    }
+
+    /**
+     * Returns the stack trace of a checkout without the frames of the cache.
+     * @param site the checkout site
+     * @return the stack trace of the caller
+     */
+    private static StackTraceElement[] callerFrames(Throwable site) {
+        StackTraceElement[] trace = site.getStackTrace();
+        int i = 0;
+
+        while (i < trace.length && isInternal(trace[i].getClassName())) {
+            i++;
+        }
+
+        return Arrays.copyOfRange(trace, i, trace.length);
+    }
+
+    /**
+     * @param className the class name of a stack frame
+     * @return <code>true</code> if the frame belongs to the checkout code of
+     *         the cache; <code>false</code> otherwise
+     */
+    private static boolean isInternal(String className) {
+        return className.equals(LeakDetector.class.getName())
+                || className.equals(ObjectCache.class.getName())
+                || className.equals(ThreadLocalCache.class.getName())
+                || className.equals(Pool.class.getName())
+                || className.equals(ImagePool.class.getName());
+    }
+}
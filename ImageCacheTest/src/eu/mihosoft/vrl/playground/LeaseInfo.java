@@ -0,0 +1,94 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable information about an object that is checked out while leak
+ * detection is enabled (see
+ * {@link ObjectCache#setLeakDetection(long, java.util.concurrent.TimeUnit, int)}).
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class LeaseInfo {
+
+    private final ObjectKey key;
+    private final long age;
+    private final StackTraceElement[] stackTrace;
+
+    /**
+     * Constructor.
+     * @param key the key of the object
+     * @param age the time since checkout (in nanoseconds)
+     * @param stackTrace the checkout site or <code>null</code>
+     */
+    LeaseInfo(ObjectKey key, long age, StackTraceElement[] stackTrace) {
+        this.key = key;
+        this.age = age;
+        this.stackTrace = stackTrace;
+    }
+
+    /**
+     * @return the key of the object
+     */
+    public ObjectKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return the time since checkout (in nanoseconds)
+     */
+    public long getAge() {
+        return age;
+    }
+
+    /**
+     * @return the stack trace of the checkout or <code>null</code> if no
+     *         stack trace has been sampled
+     */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace == null ? null : stackTrace.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(key).append(" checked out ")
+                .append(TimeUnit.NANOSECONDS.toMillis(age)).append("ms ago");
+
+        if (stackTrace != null) {
+            for (StackTraceElement e : stackTrace) {
+                sb.append("\n\tat ").append(e);
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -28,11 +28,22 @@
 
 package eu.mihosoft.vrl.playground;
 
-import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,6 +53,12 @@ import java.util.logging.Logger;
  */
 public class Main {
 
+    // image types of the keys that are used by the concurrent stress tests
+    // (all types have the same memory size)
+    private static final int[] STRESS_TYPES = {
+        BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB,
+        BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_INT_BGR};
+
     /**
      * Compares object creation strategies (cached vs. uncached)
      * @param args the command line arguments
@@ -59,6 +76,561 @@ public class Main {
 
             experimentThree(false);
             experimentThree(true);
+
+            experimentFive(false);
+            experimentFive(true);
+
+            experimentSix(false);
+            experimentSix(true);
+
+            experimentSeven(false);
+            experimentSeven(true);
+
+            experimentNine(false);
+            experimentNine(true);
+
+            experimentTen(false);
+            experimentTen(true);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for (int numKeys : new int[]{1, STRESS_TYPES.length}) {
+            double[] base = null;
+
+            for (int threads = 1; threads <= cores * 2; threads *= 2) {
+                double[] throughput = {
+                    experimentFour(threads, numKeys, false),
+                    experimentFour(threads, numKeys, true),
+                    experimentEight(threads, numKeys)};
+
+                if (base == null) {
+                    base = throughput;
+                }
+
+                System.out.printf("SCALING: keys=%d, threads=%d,"
+                        + " shared=%.2fx, handles=%.2fx, thread-local=%.2fx%n",
+                        numKeys, threads, throughput[0] / base[0],
+                        throughput[1] / base[1], throughput[2] / base[2]);
+            }
+        }
+    }
+
+    /**
+     * Uses an object cache that clears disposed images. No image is cleared
+     * by the thread that uses the images.
+     * @param background defines whether to clear images in background
+     *                   threads
+     */
+    public static void experimentFive(boolean background) {
+        System.out.println("EXPERIMENT FIVE: background=" + background);
+        ObjectCache cache = new ObjectCache();
+        cache.registerCreator(new ImageCreator());
+        cache.registerResetHook(BufferedImage.class, new ImageClearer());
+
+        if (background) {
+            cache.setResetThreads(2);
+        }
+
+        System.out.println("--> Objects Initialized!");
+
+        long timeBefore = System.nanoTime();
+
+        for (int i = 0; i < 10000; i++) {
+            BufferedImage img = null;
+
+            try {
+                img = (BufferedImage) cache.getInstance(
+                        BufferedImage.class, 640, 480);
+            } catch (ClassNotSupportedException ex) {
+                Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            }
+
+            Graphics2D g2 = img.createGraphics();
+
+            g2.fillRect(10, 10, 600, 400);
+
+            g2.dispose();
+
+            cache.dispose(img);
+        }
+
+        long timeAfter = System.nanoTime();
+
+        System.out.println("--> Duration: " + (timeAfter - timeBefore) * 1E-9);
+
+        if (background) {
+            System.out.println("--> Pending resets: "
+                    + cache.getPendingResets());
+            System.out.println("--> Average reset latency: "
+                    + cache.getAverageResetLatency() * 1E-9);
+        }
+
+        cache.shutdown();
+    }
+
+    /**
+     * Uses an object cache that only clears the modified part of disposed
+     * images. Only a small part of each image is modified.
+     * @param tracking defines whether to track the modified region
+     */
+    public static void experimentSix(boolean tracking) {
+        System.out.println("EXPERIMENT SIX: tracking=" + tracking);
+        ObjectCache cache = new ObjectCache();
+        cache.registerCreator(new ImageCreator());
+        cache.registerResetHook(BufferedImage.class, new ImageClearer());
+
+        System.out.println("--> Objects Initialized!");
+
+        long timeBefore = System.nanoTime();
+
+        for (int i = 0; i < 10000; i++) {
+            BufferedImage img = null;
+
+            try {
+                img = (BufferedImage) cache.getInstance(
+                        BufferedImage.class, 640, 480);
+            } catch (ClassNotSupportedException ex) {
+                Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            }
+
+            Graphics2D g2 = tracking
+                    ? cache.createGraphics(img) : img.createGraphics();
+
+            g2.fillRect(10, 10, 60, 40);
+
+            g2.dispose();
+
+            cache.dispose(img);
+        }
+
+        long timeAfter = System.nanoTime();
+
+        System.out.println("--> Duration: " + (timeAfter - timeBefore) * 1E-9);
+    }
+
+    /**
+     * Requests images of varying sizes. Compares exact-size caching with
+     * subimages of shared backing images.
+     * @param slabs defines whether to use subimages of shared backing images
+     */
+    public static void experimentSeven(boolean slabs) {
+        System.out.println("EXPERIMENT SEVEN: slabs=" + slabs);
+        ObjectCache cache = new ObjectCache();
+        cache.registerCreator(new ImageCreator());
+        SlabAllocator allocator = new SlabAllocator(cache);
+
+        int[] widths = {120, 320, 400, 640, 800, 130, 330, 410, 650, 810};
+        int[] heights = {80, 240, 300, 480, 600, 90, 250, 310, 490, 610};
+
+        System.out.println("--> Objects Initialized!");
+
+        long timeBefore = System.nanoTime();
+
+        for (int i = 0; i < 10000; i++) {
+            BufferedImage img = null;
+            int w = widths[i % widths.length];
+            int h = heights[i % heights.length];
+
+            try {
+                if (slabs) {
+                    img = allocator.allocate(w, h);
+                } else {
+                    img = (BufferedImage) cache.getInstance(
+                            BufferedImage.class, w, h);
+                    clearImage(img);
+                }
+            } catch (ClassNotSupportedException ex) {
+                Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            }
+
+            Graphics2D g2 = img.createGraphics();
+
+            g2.fillRect(10, 10, w - 20, h - 20);
+
+            g2.dispose();
+
+            if (slabs) {
+                allocator.free(img);
+            } else {
+                cache.dispose(img);
+            }
+        }
+
+        long timeAfter = System.nanoTime();
+
+        allocator.clear();
+
+        System.out.println("--> Duration: " + (timeAfter - timeBefore) * 1E-9);
+        System.out.println("--> Cache size (MB): "
+                + cache.getSize() / (1024 * 1024));
+    }
+
+    /**
+     * Draws a small rectangle into pooled images. The images are returned
+     * either via <code>dispose()</code> or by closing a handle whose dirty
+     * region has been tracked, i.e., only the rectangle is cleared.
+     * @param handles defines whether to use handles
+     */
+    public static void experimentTen(boolean handles) {
+        System.out.println("EXPERIMENT TEN: handles=" + handles);
+        ObjectCache cache = new ObjectCache();
+        cache.registerCreator(new ImageCreator());
+        cache.registerResetHook(BufferedImage.class, new ImageClearer());
+        ImagePool pool = new ImagePool(cache);
+
+        System.out.println("--> Objects Initialized!");
+
+        long timeBefore = System.nanoTime();
+
+        try {
+            for (int i = 0; i < 10000; i++) {
+                if (handles) {
+                    try (ObjectHandle<BufferedImage> h = pool.acquireHandle(
+                            640, 480, BufferedImage.TYPE_INT_ARGB)) {
+                        Graphics2D g2 = new TrackingGraphics2D(
+                                h.get().createGraphics(), h.getDirtyRegion());
+                        g2.fillRect(10, 10, 60, 40);
+                        g2.dispose();
+                    }
+                } else {
+                    BufferedImage img = pool.acquire(
+                            640, 480, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g2 = img.createGraphics();
+                    g2.fillRect(10, 10, 60, 40);
+                    g2.dispose();
+                    pool.release(img);
+                }
+            }
+        } catch (ClassNotSupportedException ex) {
+            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        long timeAfter = System.nanoTime();
+
+        System.out.println("--> Duration: " + (timeAfter - timeBefore) * 1E-9);
+    }
+
+    /**
+     * Renders a large canvas with many shapes. Compares rendering on one
+     * thread with parallel rendering of pooled tiles.
+     * @param tiled defines whether to render tiles in parallel
+     */
+    public static void experimentNine(boolean tiled) {
+        System.out.println("EXPERIMENT NINE: tiled=" + tiled);
+        ObjectCache cache = new ObjectCache();
+        cache.registerCreator(new ImageCreator());
+        TiledRenderer renderer = new TiledRenderer(cache);
+
+        final int size = 2048;
+        final int numShapes = 2000;
+        // x, y, radius and color of each shape
+        final int[] shapes = new int[numShapes * 4];
+        Random random = new Random(42);
+
+        for (int i = 0; i < shapes.length; i += 4) {
+            shapes[i] = random.nextInt(size);
+            shapes[i + 1] = random.nextInt(size);
+            shapes[i + 2] = 8 + random.nextInt(64);
+            shapes[i + 3] = random.nextInt();
+        }
+
+        TilePainter painter = new TilePainter() {
+
+            public void paint(Graphics2D g, int x, int y, int w, int h) {
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                        RenderingHints.VALUE_ANTIALIAS_ON);
+                for (int i = 0; i < shapes.length; i += 4) {
+                    int r = shapes[i + 2];
+                    // skip shapes outside of the tile
+                    if (shapes[i] + r < x || shapes[i] - r > x + w
+                            || shapes[i + 1] + r < y
+                            || shapes[i + 1] - r > y + h) {
+                        continue;
+                    }
+                    g.setColor(new Color(shapes[i + 3], true));
+                    g.fillOval(shapes[i] - r, shapes[i + 1] - r, 2 * r, 2 * r);
+                }
+            }
+        };
+
+        BufferedImage canvas =
+                new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+
+        System.out.println("--> Objects Initialized!");
+
+        long timeBefore = System.nanoTime();
+
+        for (int i = 0; i < 5; i++) {
+            if (tiled) {
+                try {
+                    renderer.render(canvas, painter);
+                } catch (ClassNotSupportedException ex) {
+                    Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            } else {
+                clearImage(canvas);
+                Graphics2D g2 = canvas.createGraphics();
+                painter.paint(g2, 0, 0, size, size);
+                g2.dispose();
+            }
+        }
+
+        long timeAfter = System.nanoTime();
+
+        System.out.println("--> Duration: " + (timeAfter - timeBefore) * 1E-9);
+        System.out.println("--> Cache size (MB): "
+                + cache.getSize() / (1024 * 1024));
+    }
+
+    /**
+     * Uses one object cache with thread-local magazines from several threads
+     * at the same time. Reports the throughput (compare with
+     * <code>experimentFour()</code>) and verifies the same invariants.
+     * @param numThreads number of threads that share the cache
+     * @param numKeys number of keys that are requested alternately
+     * @return the throughput (operations per second)
+     * @throws AssertionError if an invariant is violated
+     */
+    public static double experimentEight(int numThreads, int numKeys) {
+        System.out.println("EXPERIMENT EIGHT: threads=" + numThreads
+                + ", keys=" + numKeys);
+        final ThreadLocalCache cache = new ThreadLocalCache(new ObjectCache());
+        cache.getCache().registerCreator(new ImageCreator());
+
+        final ImageKey[] keys = stressKeys(numKeys);
+        final long objectSize = prewarm(cache.getCache(), keys, numThreads);
+
+        final int iterations = 100000;
+        final Set<Object> checkedOut =
+                Collections.newSetFromMap(
+                new ConcurrentHashMap<Object, Boolean>());
+        final AtomicInteger conflicts = new AtomicInteger();
+
+        double duration = runConcurrently(numThreads, new Callable<Void>() {
+
+            public Void call() throws Exception {
+                for (int i = 0; i < iterations; i++) {
+                    Object img = cache.getInstance(keys[i % keys.length]);
+                    checkOut(checkedOut, img, conflicts);
+                    cache.dispose(img);
+                }
+                return null;
+            }
+        });
+
+        // all threads have terminated, i.e., all magazines are returned
+        cache.shutdown();
+
+        double throughput = numThreads * iterations / duration;
+
+        System.out.println("--> Duration: " + duration);
+        System.out.println("--> Throughput (ops/s): " + (long) throughput);
+
+        verifyReturned(cache.getCache(), checkedOut, conflicts, objectSize);
+
+        return throughput;
+    }
+
+    /**
+     * Uses one object cache from several threads at the same time. Reports
+     * the throughput and verifies that no image is handed out to two threads
+     * at once and that all images are returned.
+     * @param numThreads number of threads that share the cache
+     * @param numKeys number of keys that are requested alternately
+     * @param handles defines whether to return images by closing handles
+     * @return the throughput (operations per second)
+     * @throws AssertionError if an invariant is violated
+     */
+    public static double experimentFour(int numThreads, int numKeys,
+            final boolean handles) {
+        System.out.println("EXPERIMENT FOUR: threads=" + numThreads
+                + ", keys=" + numKeys + ", handles=" + handles);
+        final ObjectCache cache = new ObjectCache();
+        cache.registerCreator(new ImageCreator());
+
+        final ImageKey[] keys = stressKeys(numKeys);
+        final long objectSize = prewarm(cache, keys, numThreads);
+        long sizeBefore = cache.getSize();
+
+        final int iterations = 100000;
+        final Set<Object> checkedOut =
+                Collections.newSetFromMap(
+                new ConcurrentHashMap<Object, Boolean>());
+        final AtomicInteger conflicts = new AtomicInteger();
+
+        double duration = runConcurrently(numThreads, new Callable<Void>() {
+
+            public Void call() throws Exception {
+                for (int i = 0; i < iterations; i++) {
+                    ImageKey key = keys[i % keys.length];
+                    if (handles) {
+                        try (ObjectHandle<BufferedImage> h =
+                                cache.getHandle(key, BufferedImage.class)) {
+                            checkOut(checkedOut, h.get(), conflicts);
+                        }
+                    } else {
+                        Object img = cache.getInstance(key);
+                        checkOut(checkedOut, img, conflicts);
+                        cache.dispose(img);
+                    }
+                }
+                return null;
+            }
+        });
+
+        double throughput = numThreads * iterations / duration;
+
+        System.out.println("--> Duration: " + duration);
+        System.out.println("--> Throughput (ops/s): " + (long) throughput);
+
+        verifyReturned(cache, checkedOut, conflicts, objectSize);
+
+        // every thread holds at most one of the pre-warmed images per key
+        verify(cache.getSize() == sizeBefore, "Cache size changed from "
+                + sizeBefore + " to " + cache.getSize() + " bytes");
+
+        return throughput;
+    }
+
+    /**
+     * Returns the keys of a stress test.
+     * @param numKeys the number of keys
+     * @return the keys
+     */
+    private static ImageKey[] stressKeys(int numKeys) {
+        ImageKey[] keys = new ImageKey[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+            keys[i] = new ImageKey(64, 64, STRESS_TYPES[i]);
+        }
+        return keys;
+    }
+
+    /**
+     * Creates unused objects for a stress test.
+     * @param cache the cache
+     * @param keys the keys of the objects
+     * @param count the number of objects per key
+     * @return the memory size of one object (in bytes)
+     */
+    private static long prewarm(ObjectCache cache, ObjectKey[] keys,
+            int count) {
+        try {
+            for (ObjectKey key : keys) {
+                cache.prewarm(key, count);
+            }
+        } catch (ClassNotSupportedException ex) {
+            throw new AssertionError(ex);
+        }
+        return cache.getSize() / cache.getLiveObjects();
+    }
+
+    /**
+     * Runs a task on several threads at the same time and waits until all
+     * threads have terminated.
+     * @param numThreads the number of threads
+     * @param task the task
+     * @return the duration (in seconds)
+     * @throws AssertionError if the task failed on one of the threads
+     */
+    private static double runConcurrently(int numThreads,
+            final Callable<Void> task) {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure =
+                new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>(numThreads);
+
+        for (int t = 0; t < numThreads; t++) {
+            Thread thread = new Thread(new Runnable() {
+
+                public void run() {
+                    try {
+                        start.await();
+                        task.call();
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long timeBefore = System.nanoTime();
+
+        start.countDown();
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrupted while waiting for workers");
+        }
+
+        long timeAfter = System.nanoTime();
+
+        if (failure.get() != null) {
+            throw new AssertionError("Worker failed", failure.get());
+        }
+
+        return (timeAfter - timeBefore) * 1E-9;
+    }
+
+    /**
+     * Records that an object has been handed to the calling thread and
+     * removes it again. Objects that are in use by another thread are
+     * counted as conflicts.
+     * @param checkedOut the objects that are currently in use
+     * @param o the object
+     * @param conflicts the number of conflicts
+     */
+    private static void checkOut(Set<Object> checkedOut, Object o,
+            AtomicInteger conflicts) {
+        if (!checkedOut.add(o)) {
+            conflicts.incrementAndGet();
+            return;
+        }
+        checkedOut.remove(o);
+    }
+
+    /**
+     * Verifies that a stress test handed out every object to one thread at
+     * a time and that all objects have been returned.
+     * @param cache the cache
+     * @param checkedOut the objects that are still in use
+     * @param conflicts the number of conflicts
+     * @param objectSize the memory size of one object (in bytes)
+     * @throws AssertionError if an invariant is violated
+     */
+    private static void verifyReturned(ObjectCache cache,
+            Set<Object> checkedOut, AtomicInteger conflicts, long objectSize) {
+        System.out.println("--> Conflicts: " + conflicts.get());
+
+        verify(conflicts.get() == 0,
+                conflicts.get() + " images have been used by two threads");
+        verify(checkedOut.isEmpty(),
+                checkedOut.size() + " images are still in use");
+        verify(cache.getStatistics().getOutstanding() == 0,
+                "Not all images have been returned: " + cache.getStatistics());
+        verify(cache.getLiveObjects() == cache.getUnusedObjects(),
+                cache.getLiveObjects() + " live images but "
+                + cache.getUnusedObjects() + " unused images");
+        verify(cache.getSize() == cache.getLiveObjects() * objectSize,
+                "Cache size " + cache.getSize() + " does not match "
+                + cache.getLiveObjects() + " live images");
+    }
+
+    /**
+     * Fails if a condition does not hold.
+     * @param condition the condition
+     * @param message the failure message
+     * @throws AssertionError if the condition does not hold
+     */
+    private static void verify(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
         }
     }
 
@@ -112,15 +684,17 @@ public class Main {
         int[] widths = {120, 320, 400, 640, 800};
         int[] heights = {80, 240, 300, 480, 600};
 
-        for (int i = 0; i < 20; i++) {
-            try {
-                Object o =
-                        cache.getInstance(
-                        BufferedImage.class, widths[i % 5], heights[i % 5]);
-                cache.dispose(o);
-            } catch (ClassNotSupportedException ex) {
-                Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
-            }
+        Map<ImageKey, Integer> warmup = new HashMap<ImageKey, Integer>();
+
+        for (int i = 0; i < 5; i++) {
+            warmup.put(new ImageKey(widths[i], heights[i],
+                    BufferedImage.TYPE_INT_ARGB), 1);
+        }
+
+        try {
+            cache.prewarm(warmup, 2);
+        } catch (ClassNotSupportedException ex) {
+            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
         }
 
         System.out.println("--> Objects Initialized!");
@@ -148,7 +722,9 @@ public class Main {
 
             g2.dispose();
 
-            cache.dispose(img);
+            if (reuse) {
+                cache.dispose(img);
+            }
         }
 
         long timeAfter = System.nanoTime();
@@ -198,10 +774,6 @@ public class Main {
      * @param image the image to clear
      */
     public static void clearImage(BufferedImage image) {
-        Graphics2D g2 = image.createGraphics();
-
-        g2.setComposite(AlphaComposite.Clear);
-        g2.setPaint(new Color(0.f, 0.f, 0.f, 0.f));
-        g2.fillRect(0, 0, image.getWidth(), image.getHeight());
+        ImageClearer.clear(image);
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * Evicts unused objects if the heap usage exceeds a threshold. The
+ * threshold is set on all heap memory pools that support usage thresholds.
+ * Collection usage thresholds are preferred since they are checked after
+ * garbage collections, i.e., they do not include garbage.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class MemoryPressureMonitor implements NotificationListener {
+
+    private final ObjectCache cache;
+    private final int hotEntries;
+
+    /**
+     * Constructor.
+     * @param cache the cache
+     * @param threshold the threshold (fraction of the maximum size of each
+     *                  heap memory pool)
+     * @param hotEntries the number of unused objects per key that are kept
+     */
+    MemoryPressureMonitor(ObjectCache cache, double threshold, int hotEntries) {
+        if (threshold <= 0 || threshold >= 1) {
+            throw new IllegalArgumentException(
+                    "Threshold must be in (0, 1): " + threshold);
+        }
+
+        this.cache = cache;
+        this.hotEntries = hotEntries;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+
+            if (pool.getType() != MemoryType.HEAP || max <= 0) {
+                continue;
+            }
+
+            long bytes = (long) (max * threshold);
+
+            if (pool.isCollectionUsageThresholdSupported()) {
+                pool.setCollectionUsageThreshold(bytes);
+            } else if (pool.isUsageThresholdSupported()) {
+                pool.setUsageThreshold(bytes);
+            }
+        }
+
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).
+                addNotificationListener(this, null, null);
+    }
+
+    public void handleNotification(Notification n, Object handback) {
+        String type = n.getType();
+
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(
+                type) || MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(
+                type)) {
+            cache.relieveMemoryPressure(hotEntries);
+        }
+    }
+
+    /**
+     * Stops monitoring. The thresholds of the memory pools are not reset.
+     */
+    void shutdown() {
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).
+                    removeNotificationListener(this);
+        } catch (ListenerNotFoundException ex) {
+            // already removed
+        }
+    }
+}
@@ -28,11 +28,33 @@
 
 package eu.mihosoft.vrl.playground;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 
 /**
@@ -40,6 +62,62 @@ import java.util.Map;
  * A simple object cache that can be used to reduce object instanciation.
  * </p>
  * <p>
+ * This cache is thread-safe. Checkout and return do not use a global lock.
+ * Each entry is claimed via compare-and-set, i.e., two threads can never
+ * receive the same object.
+ * </p>
+ * <p>
+ * The memory consumption of the cache is limited by a byte budget. If the
+ * budget is exceeded, unused objects are evicted according to the eviction
+ * policy. Objects that are in use are never evicted.
+ * </p>
+ * <p>
+ * Optionally, the number of live objects can be limited per key and in
+ * total (see {@link #setMaxLiveObjects(int)}). If a limit is reached,
+ * requests are served according to the exhaustion policy (see
+ * {@link #setExhaustionPolicy(eu.mihosoft.vrl.playground.ExhaustionPolicy,
+ * long, java.util.concurrent.TimeUnit)}).
+ * </p>
+ * <p>
+ * Disposed objects can be reset by background threads (see
+ * {@link #setResetThreads(int)}). In this case objects are returned to the
+ * cache after they have been reset, i.e., <code>getInstance()</code> only
+ * returns objects that have already been reset.
+ * </p>
+ * <p>
+ * The cache can be pre-warmed with the objects that are expected to be
+ * requested (see {@link #prewarm(java.util.Map, int)}). Optionally, the
+ * capacity of each key is adapted to the observed demand (see
+ * {@link #setAdaptiveSizing(long, java.util.concurrent.TimeUnit, int)}).
+ * The observed demand can be persisted and used to pre-warm the cache after
+ * a restart (see {@link #warmStart(java.io.File, int)}). Objects that are
+ * created in advance can be allocated lazily, i.e., when
+ * they are checked out for the first time (see
+ * {@link #setLazyCreation(boolean)}).
+ * </p>
+ * <p>
+ * The cache can release unused objects if the heap usage exceeds a
+ * threshold (see {@link #setMemoryPressureRelief(double, int)}).
+ * </p>
+ * <p>
+ * Optionally, the cache measures per key whether resetting a disposed
+ * object is cheaper than creating a new one and drops disposed objects
+ * otherwise (see {@link #setAdaptiveReuse(long,
+ * java.util.concurrent.TimeUnit)}).
+ * </p>
+ * <p>
+ * Objects that are not disposed can be detected (see
+ * {@link #setLeakDetection(long, java.util.concurrent.TimeUnit, int)}). In
+ * this case the cache does not prevent checked out objects from being
+ * garbage collected. Objects that became unreachable without being disposed
+ * are removed from the cache.
+ * </p>
+ * <p>
+ * The cache records statistics per object key (see
+ * {@link #getStatistics()}). They can be exported via JMX (see
+ * {@link #registerMBean(java.lang.String)}).
+ * </p>
+ * <p>
  * <b>Warning:</b>This is useful for heavy wight objects only! Do not use it
  * for objects that are cheap to create. This cache has been designed
  * for testing porposes only. Do not expect much.
@@ -48,10 +126,53 @@ import java.util.Map;
  */
 public class ObjectCache {
 
-    private Map classEntries = new HashMap<Class<?>, ArrayDeque<ObjectEntry>>();
-    private Map<Class<?>, ObjectCreator> creators =
-            new HashMap<Class<?>, ObjectCreator>();
-    private static final int MAX_ENTRIES = 30;
+    private final IdentityIndex instances = new IdentityIndex();
+    private final ConcurrentMap<ObjectKey, KeyPool> pools =
+            new ConcurrentHashMap<ObjectKey, KeyPool>();
+    private final ConcurrentMap<Class<?>, ObjectCreator> creators =
+            new ConcurrentHashMap<Class<?>, ObjectCreator>();
+    private final ConcurrentMap<Class<?>, ResetHook> resetHooks =
+            new ConcurrentHashMap<Class<?>, ResetHook>();
+    // unused objects of unknown size that are kept per key
+    private static final int MAX_UNSIZED_ENTRIES = 30;
+    // weight of the warm-start profile in saved profiles
+    private static final double PROFILE_DECAY = 0.75;
+    private final AtomicLong size = new AtomicLong();
+    private volatile long maxSize;
+    private final AtomicInteger live = new AtomicInteger();
+    private volatile int maxLive = Integer.MAX_VALUE;
+    private volatile int maxLivePerKey = Integer.MAX_VALUE;
+    private volatile ExhaustionPolicy exhaustionPolicy = ExhaustionPolicy.BLOCK;
+    private volatile long exhaustionTimeout = Long.MAX_VALUE;
+    private volatile EvictionPolicy evictionPolicy = new LRUEvictionPolicy();
+    private volatile BackgroundResetter resetter;
+    private volatile boolean deferredReset;
+    private volatile boolean lazyCreation;
+    private PoolSizer sizer;
+    private final ReferenceQueue<Object> leaseQueue =
+            new ReferenceQueue<Object>();
+    private volatile LeakDetector leakDetector;
+    private MemoryPressureMonitor pressureMonitor;
+    private ProfileWriter profileWriter;
+    private ReuseAdvisor reuseAdvisor;
+    private volatile Map<ObjectKey, Integer> warmStartProfile =
+            Collections.emptyMap();
+
+    /**
+     * Constructor. The byte budget defaults to a quarter of the maximum heap
+     * size.
+     */
+    public ObjectCache() {
+        this(Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * Constructor.
+     * @param maxSize the byte budget of this cache
+     */
+    public ObjectCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
 
     /**
      * Returns an instance of a given class. If the class has been instanciated
@@ -66,68 +187,240 @@ public class ObjectCache {
      */
     public Object getInstance(Class<?> c, Object... params)
             throws ClassNotSupportedException {
+        return getInstance(getCreator(c).createKey(params));
+    }
+
+    /**
+     * Returns an instance that matches the given key. If an unused object
+     * with this key exists in the cache it will be returned instead of
+     * creating a new one. Lookups take constant time and do not allocate
+     * memory, i.e., callers that reuse their key objects can use this method
+     * on the hot path.
+     * @param key the key that specifies the requested object
+     * @return an instance that matches the given key
+     * @throws ClassNotSupportedException
+     * @throws CacheExhaustedException if the maximum number of live objects
+     *         has been reached and the request cannot be served
+     */
+    public Object getInstance(ObjectKey key)
+            throws ClassNotSupportedException {
+        ObjectEntry oE = prepare(acquire(key));
+        Object o = oE.getObject();
+        startLease(oE, o);
+        return o;
+    }
 
-        Object result = findInstanceByParams(c, params);
+    /**
+     * Returns a handle of an instance that matches the given key (see
+     * {@link #getInstance(eu.mihosoft.vrl.playground.ObjectKey)}). Closing
+     * the handle returns the instance without looking up its entry.
+     * @param <T> the object type
+     * @param key the key that specifies the requested object
+     * @param type the object type
+     * @return a handle of an instance that matches the given key
+     * @throws ClassNotSupportedException
+     * @throws CacheExhaustedException if the maximum number of live objects
+     *         has been reached and the request cannot be served
+     */
+    public <T> ObjectHandle<T> getHandle(ObjectKey key, Class<T> type)
+            throws ClassNotSupportedException {
+        ObjectEntry oE = prepare(acquire(key));
+        Object o = oE.getObject();
 
-        if (result == null) {
-            result = createNewObject(c, params);
+        if (!type.isInstance(o)) {
+            returnUnused(oE);
+            throw new ClassCastException("Cannot cast " + describe(o)
+                    + " to " + type.getName());
         }
 
-        return result;
+        startLease(oE, o);
+        return new ObjectHandle<T>(this, oE, type.cast(o),
+                oE.getGeneration());
     }
 
     /**
-     * Registers an object creator with this cache.
-     * @param creator the creator to add
+     * Returns an entry that matches the given key and marks it as used.
+     * @param key the key that specifies the requested object
+     * @return an entry that matches the given key
+     * @throws ClassNotSupportedException
+     * @throws CacheExhaustedException if the maximum number of live objects
+     *         has been reached and the request cannot be served
      */
-    public void registerCreator(ObjectCreator creator) {
-        creators.put(creator.getType(), creator);
+    ObjectEntry acquire(ObjectKey key) throws ClassNotSupportedException {
+        KeyPool pool = getPool(key);
+        StatisticsRecorder stats = pool.getStatistics();
+
+        long start = System.nanoTime();
+        ObjectEntry result = pool.poll();
+
+        stats.lookupLatency.record(System.nanoTime() - start);
+
+        if (result != null) {
+            stats.hits.increment();
+            return result;
+        }
+
+        ObjectCreator creator = getCreator(key.getType());
+
+        if (reserve(pool)) {
+            return createNewEntry(creator, pool);
+        }
+
+        return acquireExhausted(creator, pool);
     }
 
     /**
-     * Disposes an object. The object is free to be returned by another
-     * <code>getInstance()</code> call.
-     * @param o the object to dispose
+     * Returns an entry if the maximum number of live objects has been
+     * reached, according to the exhaustion policy.
+     * @param creator the creator of the requested object
+     * @param pool the pool of the requested object
+     * @return an entry that has been marked as used
+     * @throws CacheExhaustedException if the request cannot be served
      */
-    public void dispose(Object o) {
-        ObjectEntry oE = findObjectEntryByInstance(o);
-        if (oE!=null) {
-            oE.setInUse(false);
+    private ObjectEntry acquireExhausted(ObjectCreator creator, KeyPool pool) {
+        switch (exhaustionPolicy) {
+            case FAIL:
+                pool.getStatistics().misses.increment();
+                throw exhausted(pool.getKey());
+            case ALLOCATE:
+                pool.reserve();
+                live.incrementAndGet();
+                ObjectEntry result = createNewEntry(creator, pool);
+                // the object is destroyed when it is disposed
+                result.evict();
+                return result;
+            default:
+                return await(creator, pool);
         }
     }
 
     /**
-     * Converts parameters to string.
-     * @param params the parameters to convert
-     * @return the parameter string
+     * Returns several instances that match the given key (see
+     * {@link #getInstances(eu.mihosoft.vrl.playground.ObjectKey, int,
+     * boolean)}). Missing objects are created by the calling thread.
+     * @param key the key that specifies the requested objects
+     * @param n the number of objects
+     * @return <code>n</code> instances that match the given key
+     * @throws ClassNotSupportedException
+     * @throws CacheExhaustedException if the maximum number of live objects
+     *         has been reached and the request cannot be served
+     */
+    public List<Object> getInstances(ObjectKey key, int n)
+            throws ClassNotSupportedException {
+        return getInstances(key, n, false);
+    }
+
+    /**
+     * Returns several instances that match the given key. Unused objects are
+     * taken from the cache with one lookup and one lock acquisition. If the
+     * request cannot be served completely, no object is checked out.
+     * <p>
+     * <b>Note:</b> if the exhaustion policy is
+     * {@link ExhaustionPolicy#BLOCK}, <code>n</code> must not exceed the
+     * maximum number of live objects per key. Otherwise the calling thread
+     * waits for objects that it holds itself.
+     * </p>
+     * @param key the key that specifies the requested objects
+     * @param n the number of objects
+     * @param parallel defines whether to create missing objects in parallel
+     *                 (on the common fork-join pool)
+     * @return <code>n</code> instances that match the given key
+     * @throws ClassNotSupportedException
+     * @throws CacheExhaustedException if the maximum number of live objects
+     *         has been reached and the request cannot be served
      */
-    public static String paramsToString(Object... params) {
-        String result = "";
+    public List<Object> getInstances(ObjectKey key, int n, boolean parallel)
+            throws ClassNotSupportedException {
+        List<ObjectEntry> entries = acquireAll(key, n, parallel);
+        List<Object> result = new ArrayList<Object>(entries.size());
+
+        boolean success = false;
+        int i = 0;
+
+        try {
+            for (; i < entries.size(); i++) {
+                entries.set(i, prepare(entries.get(i)));
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                // the entry that could not be prepared has been evicted
+                for (int j = 0; j < entries.size(); j++) {
+                    if (j != i) {
+                        returnUnused(entries.get(j));
+                    }
+                }
+            }
+        }
 
-        for (Object p : params) {
-            result += p.toString();
+        for (ObjectEntry oE : entries) {
+            Object o = oE.getObject();
+            startLease(oE, o);
+            result.add(o);
         }
 
         return result;
     }
 
     /**
-     * Tries to find an object entry by its object instance
-     * @param o the object
-     * @return the requested object entry or <code>null</code> if no such
-     *         entry exists
+     * Returns several entries that match the given key and marks them as
+     * used.
+     * @param key the key that specifies the requested objects
+     * @param n the number of entries
+     * @param parallel defines whether to create missing objects in parallel
+     * @return <code>n</code> entries that match the given key
+     * @throws ClassNotSupportedException
      */
-    private ObjectEntry findObjectEntryByInstance(Object o) {
-        ObjectEntry result = null;
+    List<ObjectEntry> acquireAll(ObjectKey key, int n, boolean parallel)
+            throws ClassNotSupportedException {
+        KeyPool pool = getPool(key);
+        StatisticsRecorder stats = pool.getStatistics();
+        List<ObjectEntry> result = new ArrayList<ObjectEntry>(n);
 
-        Deque<ObjectEntry> objects =
-                (Deque<ObjectEntry>) classEntries.get(o.getClass());
+        long start = System.nanoTime();
+        pool.pollAll(n, result);
 
-        if (objects != null) {
-            for (ObjectEntry oE : objects) {
-                if (oE.getObject() == o) {
-                    result = oE;
-                    break;
+        stats.lookupLatency.record(System.nanoTime() - start);
+        stats.hits.add(result.size());
+
+        if (result.size() == n) {
+            return result;
+        }
+
+        boolean success = false;
+        int numReserved = 0;
+
+        try {
+            ObjectCreator creator = getCreator(key.getType());
+
+            while (result.size() + numReserved < n && reserve(pool)) {
+                numReserved++;
+            }
+
+            if (parallel && numReserved > 1) {
+                int numTasks = numReserved;
+                // failed tasks release their reservations
+                numReserved = 0;
+                createAll(creator, pool, numTasks, result);
+            } else {
+                while (numReserved > 0) {
+                    numReserved--;
+                    result.add(createNewEntry(creator, pool));
+                }
+            }
+
+            while (result.size() < n) {
+                result.add(acquireExhausted(creator, pool));
+            }
+
+            success = true;
+        } finally {
+            if (!success) {
+                for (; numReserved > 0; numReserved--) {
+                    unreserve(pool);
+                }
+                for (ObjectEntry oE : result) {
+                    returnUnused(oE);
                 }
             }
         }
@@ -136,111 +429,1747 @@ public class ObjectCache {
     }
 
     /**
-     * Tries to find an object instance by the parameter list it has been
-     * created with.
-     * @param c the class of the object
-     * @param params the object parameters
-     * @return the requested object or <code>null</code> if no such object
-     *         exists
+     * Creates new entries in parallel on the common fork-join pool. The
+     * objects must have been counted as live objects already. The method
+     * returns after all tasks have completed.
+     * @param creator the creator
+     * @param pool the pool of the objects to create
+     * @param n the number of entries
+     * @param result the list that receives the new entries (entries that have
+     *               been created successfully are added even if other tasks
+     *               failed)
      */
-    private Object findInstanceByParams(Class<?> c, Object... params) {
-        Object result = null;
+    private void createAll(final ObjectCreator creator, final KeyPool pool,
+            int n, List<ObjectEntry> result) {
+        List<Callable<ObjectEntry>> tasks =
+                new ArrayList<Callable<ObjectEntry>>(n);
+
+        for (int i = 0; i < n; i++) {
+            tasks.add(new Callable<ObjectEntry>() {
+
+                public ObjectEntry call() {
+                    return createNewEntry(creator, pool);
+                }
+            });
+        }
 
-        Deque<ObjectEntry> objectList = (Deque) classEntries.get(c);
+        ExecutionException failure = null;
+        boolean interrupted = false;
 
-        if (objectList != null) {
-            for (ObjectEntry oE : objectList) {
-                if (!oE.isInUse() && oE.getParams().
-                        equals(ObjectEntry.paramsToString(params))) {
-                    result = oE.getObject();
-                    oE.setInUse(true);
+        for (Future<ObjectEntry> f : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            while (true) {
+                try {
+                    result.add(f.get());
+                    break;
+                } catch (InterruptedException ex) {
+                    // the task has completed, i.e., get() does not block
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    failure = ex;
                     break;
                 }
             }
         }
 
-        return result;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failure != null) {
+            throw unwrap(failure);
+        }
     }
 
     /**
-     * Creates a new object and adds a corresponding object entry to the cache.
-     * @param c the class of the object to create
-     * @param params the paramters used for instanciation
-     * @return the new object
+     * Returns the cause of an execution exception as unchecked exception.
+     * Errors are rethrown.
+     * @param ex the execution exception
+     * @return the unchecked cause
+     */
+    private static RuntimeException unwrap(ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /**
+     * Returns an entry that has been checked out but not handed to the
+     * caller. The entry has not been modified, i.e., it is not reset.
+     * @param oE the entry
+     */
+    private void returnUnused(ObjectEntry oE) {
+        int previousState = oE.release();
+
+        getPool(oE.getKey()).getStatistics().returns.increment();
+
+        if (previousState == ObjectEntry.IN_USE) {
+            offer(oE);
+        } else if (previousState == ObjectEntry.RETIRED) {
+            remove(oE);
+        }
+    }
+
+    /**
+     * Makes an entry that has been checked out ready for use, i.e., creates
+     * the object of a placeholder entry and runs a pending reset. Objects
+     * that have just been created are not reset. If the object cannot be
+     * reset, the entry is evicted and another entry is checked out instead.
+     * If this method fails, the entry has been evicted.
+     * @param oE the entry
+     * @return an entry that is ready for use
      * @throws ClassNotSupportedException
      */
-    private Object createNewObject(Class<?> c, Object... params)
+    private ObjectEntry prepare(ObjectEntry oE)
             throws ClassNotSupportedException {
-        Object result = null;
+        while (true) {
+            if (!oE.isMaterialized()) {
+                materialize(oE);
+                return oE;
+            }
 
-        if (creators.containsKey(c)) {
-            ObjectCreator creator = creators.get(c);
-            ObjectEntry oE = creator.newInstance(params);
-            result = oE.getObject();
-            add(oE);
-        } else {
-            throw new ClassNotSupportedException(
-                    "No Creator for " + c.getName() + " found!");
+            if (!oE.isResetPending()) {
+                return oE;
+            }
+
+            ResetHook hook = resetHooks.get(oE.getKey().getType());
+
+            if (hook == null || runHook(hook, oE)) {
+                oE.setResetPending(false);
+                oE.getDirtyRegion().reset();
+                return oE;
+            }
+
+            discard(oE);
+            oE = acquire(oE.getKey());
         }
+    }
 
-        return result;
+    /**
+     * Creates the object of a placeholder entry that has been checked out.
+     * The byte budget is corrected if the estimated size was wrong. If the
+     * object cannot be created, the entry is evicted.
+     * @param oE the placeholder entry
+     */
+    private void materialize(ObjectEntry oE) {
+        KeyPool pool = getPool(oE.getKey());
+        ObjectCreator creator = creators.get(oE.getKey().getType());
+        long estimate = oE.getSize();
+        ObjectEntry created = null;
+
+        long start = System.nanoTime();
+
+        try {
+            created = create(creator, oE.getKey());
+        } finally {
+            if (created == null) {
+                discard(oE);
+            }
+        }
+
+        oE.materialize(created);
+        instances.put(oE);
+        size.addAndGet(oE.getSize() - estimate);
+
+        pool.getStatistics().creationLatency.record(System.nanoTime() - start);
+
+        cleanup();
     }
 
     /**
-     * Adds an object entry to the cache.
-     * @param oEntry the entry to add
+     * Evicts an entry that has been checked out but cannot be handed to the
+     * caller.
+     * @param oE the entry
      */
-    private void add(ObjectEntry oEntry) {
+    private void discard(ObjectEntry oE) {
+        oE.evict();
+
+        if (oE.release() == ObjectEntry.RETIRED) {
+            getPool(oE.getKey()).getStatistics().returns.increment();
+            remove(oE);
+        }
+    }
+
+    /**
+     * Waits until an entry is returned or until a new entry can be created.
+     * @param creator the creator of the requested object
+     * @param pool the pool of the requested object
+     * @return an entry that has been marked as used
+     * @throws CacheExhaustedException if the timeout elapses or if the
+     *         thread is interrupted
+     */
+    private ObjectEntry await(ObjectCreator creator, KeyPool pool) {
+        long deadline = System.nanoTime() + exhaustionTimeout;
+        boolean first = false;
+
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            ObjectEntry result = remaining > 0
+                    ? pool.await(remaining, first) : pool.poll();
+
+            if (result != null) {
+                pool.getStatistics().hits.increment();
+                return result;
+            }
 
-        Class<?> c = oEntry.getObject().getClass();
-        ArrayDeque<ObjectEntry> objects =
-                (ArrayDeque<ObjectEntry>) classEntries.get(c);
+            if (reserve(pool)) {
+                return createNewEntry(creator, pool);
+            }
+
+            if (Thread.currentThread().isInterrupted()
+                    || deadline - System.nanoTime() <= 0) {
+                pool.getStatistics().misses.increment();
+                throw exhausted(pool.getKey());
+            }
 
-        if (objects == null) {
-            objects = new ArrayDeque<ObjectEntry>();
-            classEntries.put(c, objects);
+            // keep the place in the queue
+            first = true;
         }
+    }
 
-        cleanup(objects);
-        objects.add(oEntry);
+    /**
+     * Returns the exception that is thrown if no object with the specified
+     * key can be provided.
+     * @param key the object key
+     * @return the exception
+     */
+    private CacheExhaustedException exhausted(ObjectKey key) {
+        return new CacheExhaustedException("No " + key
+                + " available: live object limit reached (per key: "
+                + maxLivePerKey + ", total: " + maxLive + ")");
     }
 
     /**
-     * Removes old instances to free memory.
-     * @param objects the object list to cleanup
+     * Counts a new live object if neither the per-key limit nor the total
+     * limit has been reached. If only the total limit has been reached,
+     * unused objects of other keys are evicted to make room.
+     * @param pool the pool of the new object
+     * @return <code>true</code> if the object has been counted;
+     *         <code>false</code> if a limit has been reached
      */
-    private void cleanup(ArrayDeque<ObjectEntry> objects) {
-        while (objects.size() > MAX_ENTRIES) {
-            ObjectEntry oE = null;
-            boolean found = false;
+    private boolean reserve(KeyPool pool) {
+        if (!pool.tryReserve(maxLivePerKey)) {
+            return false;
+        }
 
-            // check if an unused instance exists
-            for (Iterator<ObjectEntry> it =
-                    objects.descendingIterator(); it.hasNext();) {
-                oE = it.next();
-                if (!oE.isInUse()) {
-                    found = true;
-                    break;
+        while (true) {
+            int n = live.get();
+            if (n < maxLive) {
+                if (live.compareAndSet(n, n + 1)) {
+                    return true;
                 }
+            } else if (!evictOne()) {
+                pool.unreserve();
+                return false;
             }
+        }
+    }
 
-            // if we found an unused instance remove it, remove the oldest
-            // instance otherwise
-            if (found) {
-                objects.remove(oE);
-            } else {
-                objects.removeLast();
+    /**
+     * Counts a removed live object and wakes a thread that waits for an
+     * object.
+     * @param pool the pool of the removed object
+     */
+    private void unreserve(KeyPool pool) {
+        pool.unreserve();
+        live.decrementAndGet();
+
+        if (!pool.signal() && maxLive != Integer.MAX_VALUE) {
+            signalAny();
+        }
+    }
+
+    /**
+     * Wakes a thread that waits for an object of an arbitrary key.
+     */
+    private void signalAny() {
+        for (KeyPool p : pools.values()) {
+            if (p.signal()) {
+                break;
             }
         }
     }
-} // end class
 
-class ClassNotSupportedException extends Exception {
+    /**
+     * Registers an object creator with this cache.
+     * @param creator the creator to add
+     */
+    public void registerCreator(ObjectCreator creator) {
+        creators.put(creator.getType(), creator);
+    }
+
+    /**
+     * Registers a reset hook with this cache. The hook is called for each
+     * disposed object of the specified class before the object can be
+     * returned by another <code>getInstance()</code> call.
+     * @param c the class of the objects to reset
+     * @param hook the hook to add
+     */
+    public void registerResetHook(Class<?> c, ResetHook hook) {
+        resetHooks.put(c, hook);
+    }
+
+    /**
+     * Defines the number of background threads that reset disposed objects.
+     * If the number is zero, objects are reset by the thread that disposes
+     * them (this is the default).
+     * @param numThreads the number of background threads
+     */
+    public synchronized void setResetThreads(int numThreads) {
+        if (resetter != null) {
+            resetter.shutdown();
+        }
+        resetter = numThreads > 0 ? new BackgroundResetter(numThreads) : null;
+    }
+
+    /**
+     * Returns the number of disposed objects that wait for being reset by a
+     * background thread.
+     * @return the number of objects that wait for being reset
+     */
+    public int getPendingResets() {
+        BackgroundResetter r = resetter;
+        return r == null ? 0 : r.getQueueSize();
+    }
+
+    /**
+     * Returns the average time between disposing an object and returning it
+     * to the cache after it has been reset by a background thread.
+     * @return the average reset latency (in nanoseconds)
+     */
+    public long getAverageResetLatency() {
+        BackgroundResetter r = resetter;
+        return r == null ? 0 : r.getAverageLatency();
+    }
+
+    /**
+     * Returns the maximum time between disposing an object and returning it
+     * to the cache after it has been reset by a background thread.
+     * @return the maximum reset latency (in nanoseconds)
+     */
+    public long getMaxResetLatency() {
+        BackgroundResetter r = resetter;
+        return r == null ? 0 : r.getMaxLatency();
+    }
+
+    /**
+     * Indicates whether disposed objects are reset when they are checked
+     * out again (see {@link #setDeferredReset(boolean)}).
+     * @return <code>true</code> if resets are deferred;
+     *         <code>false</code> otherwise
+     */
+    public boolean isDeferredReset() {
+        return deferredReset;
+    }
+
+    /**
+     * Defines whether disposed objects are reset when they are checked out
+     * again instead of when they are disposed. Deferred resets are run by
+     * the thread that checks out the object. Objects that are evicted before
+     * they are reused are never reset, and objects that have just been
+     * created are handed out without being reset. Background resets (see
+     * {@link #setResetThreads(int)}) are not used while resets are
+     * deferred.
+     * @param deferredReset defines whether to defer resets
+     */
+    public void setDeferredReset(boolean deferredReset) {
+        this.deferredReset = deferredReset;
+    }
+
+    /**
+     * Indicates whether objects that are created in advance are allocated
+     * lazily (see {@link #setLazyCreation(boolean)}).
+     * @return <code>true</code> if objects are allocated lazily;
+     *         <code>false</code> otherwise
+     */
+    public boolean isLazyCreation() {
+        return lazyCreation;
+    }
+
+    /**
+     * Defines whether objects that are created in advance, i.e., by
+     * pre-warming or adaptive sizing, are allocated lazily. In this case
+     * the cache only adds placeholder entries whose estimated size (see
+     * {@link ObjectCreator#estimateSize(eu.mihosoft.vrl.playground.ObjectKey)})
+     * counts towards the byte budget and which count as live objects. The
+     * object of a placeholder is created when it is checked out for the
+     * first time. Creators that cannot estimate the size of their objects
+     * create them eagerly.
+     * @param lazyCreation defines whether to allocate objects lazily
+     */
+    public void setLazyCreation(boolean lazyCreation) {
+        this.lazyCreation = lazyCreation;
+    }
+
+    /**
+     * Enables adaptive sizing. The demand of each key, i.e., the maximum
+     * number of objects in use at the same time plus headroom for misses
+     * (at most half of that number), is sampled periodically by a background
+     * thread. Keys whose capacity is
+     * below the maximum demand of the last <code>windowSize</code> samples
+     * are pre-warmed. Unused objects of keys above that demand are evicted,
+     * i.e., idle keys shrink after <code>windowSize</code> intervals.
+     * @param interval the sampling interval (adaptive sizing is disabled if
+     *                 the interval is zero)
+     * @param unit the unit of the sampling interval
+     * @param windowSize the number of samples that determine the capacity
+     */
+    public synchronized void setAdaptiveSizing(
+            long interval, TimeUnit unit, int windowSize) {
+        if (sizer != null) {
+            sizer.shutdown();
+            sizer = null;
+        }
+        if (interval > 0) {
+            sizer = new PoolSizer(this, interval, unit, windowSize);
+        }
+    }
+
+    /**
+     * Enables leak detection. Objects that are checked out are only referenced
+     * weakly by the cache. A background thread removes objects that became
+     * unreachable without being disposed (they are counted as leaks, see
+     * {@link CacheStatistics#getLeaks()} and logged as soon as they have been
+     * collected). Objects that are held longer than the threshold are logged
+     * on demand (see {@link #reportLeases()}). The stack traces of checkouts
+     * are sampled. Each checkout allocates a small lease object while leak
+     * detection is enabled.
+     * @param threshold the time after which held objects are reported (leak
+     *                  detection is disabled if the threshold is zero)
+     * @param unit the unit of the threshold
+     * @param samplingInterval a stack trace is captured for every n-th
+     *                         checkout on average (no stack traces are
+     *                         captured if this value is zero)
+     */
+    public synchronized void setLeakDetection(
+            long threshold, TimeUnit unit, int samplingInterval) {
+        if (leakDetector != null) {
+            leakDetector.shutdown();
+            leakDetector = null;
+        }
+        if (threshold > 0) {
+            leakDetector = new LeakDetector(this, leaseQueue,
+                    unit.toNanos(threshold), samplingInterval);
+        }
+    }
+
+    /**
+     * Logs a warning for each object that is held longer than the leak
+     * detection threshold and that has not been reported before. All entries
+     * are scanned, i.e., this is meant for diagnostics, e.g., on shutdown or
+     * on request of an administrator.
+     */
+    public void reportLeases() {
+        LeakDetector d = leakDetector;
+
+        if (d != null) {
+            d.report();
+        }
+    }
+
+    /**
+     * Returns the objects that have been checked out while leak detection was
+     * enabled and that are held at least for the specified time.
+     * @param minAge the minimum time since checkout
+     * @param unit the unit of the minimum time
+     * @return the leases of the objects, oldest first
+     */
+    public List<LeaseInfo> getLeases(long minAge, TimeUnit unit) {
+        List<Lease> leases = getLeaseList();
+        long now = System.nanoTime();
+        long min = unit.toNanos(minAge);
+
+        Collections.sort(leases, new Comparator<Lease>() {
+
+            public int compare(Lease l1, Lease l2) {
+                return Long.signum(l1.getCheckoutTime() - l2.getCheckoutTime());
+            }
+        });
+
+        List<LeaseInfo> result = new ArrayList<LeaseInfo>();
+
+        for (Lease l : leases) {
+            if (now - l.getCheckoutTime() >= min) {
+                result.add(l.toInfo());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the leases of all objects that are checked out
+     */
+    List<Lease> getLeaseList() {
+        List<Lease> result = new ArrayList<Lease>();
+
+        for (ObjectEntry oE : instances.entries()) {
+            Lease l = oE.getLease();
+            if (l != null) {
+                result.add(l);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Starts the lease of an object that has been checked out (only if leak
+     * detection is enabled).
+     * @param oE the entry of the object
+     * @param o the object
+     */
+    void startLease(ObjectEntry oE, Object o) {
+        LeakDetector d = leakDetector;
 
-    public ClassNotSupportedException() {
+        if (d != null) {
+            oE.startLease(d.lease(oE, o));
+        }
     }
 
-    public ClassNotSupportedException(String message) {
-        super(message);
+    /**
+     * Removes the entry of a leased object that became unreachable without
+     * being disposed.
+     * @param l the lease
+     */
+    void reclaim(Lease l) {
+        ObjectEntry oE = l.getEntry();
+
+        // the object might have been disposed in the meantime
+        if (oE.getLease() == l && oE.reclaim()) {
+            getPool(oE.getKey()).getStatistics().leaks.increment();
+            Logger.getLogger(ObjectCache.class.getName()).log(Level.WARNING,
+                    "Object has not been disposed: {0}", l.toInfo());
+            remove(oE);
+        }
     }
-}
+
+    /**
+     * Enables memory pressure relief. If the usage of a heap memory pool
+     * exceeds the specified fraction of its maximum size after a garbage
+     * collection, all unused objects except the <code>hotEntries</code> most
+     * recently returned objects of each key are evicted. The byte budget is
+     * not changed, i.e., the cache grows again if the pressure is gone.
+     * <p>
+     * <b>Note:</b> memory pool thresholds are global. Caches that enable
+     * relief with different thresholds override each other's thresholds.
+     * </p>
+     * @param threshold the heap usage threshold (fraction of the maximum
+     *                  pool size; relief is disabled if the threshold is
+     *                  zero)
+     * @param hotEntries the number of unused objects per key that are kept
+     */
+    public synchronized void setMemoryPressureRelief(
+            double threshold, int hotEntries) {
+        if (pressureMonitor != null) {
+            pressureMonitor.shutdown();
+            pressureMonitor = null;
+        }
+        if (threshold > 0) {
+            pressureMonitor =
+                    new MemoryPressureMonitor(this, threshold, hotEntries);
+        }
+    }
+
+    /**
+     * Evicts all unused objects except the most recently returned objects of
+     * each key.
+     * @param hotEntries the number of unused objects per key that are kept
+     * @return the number of bytes that have been released
+     */
+    public long relieveMemoryPressure(int hotEntries) {
+        List<ObjectEntry> victims = new ArrayList<ObjectEntry>();
+
+        for (KeyPool pool : pools.values()) {
+            pool.trim(hotEntries, victims);
+        }
+
+        long released = 0;
+
+        for (ObjectEntry oE : victims) {
+            released += oE.getSize();
+            remove(oE);
+        }
+
+        if (!victims.isEmpty()) {
+            Logger.getLogger(ObjectCache.class.getName()).log(Level.INFO,
+                    "Memory pressure: evicted {0} objects ({1} bytes)",
+                    new Object[]{victims.size(), released});
+        }
+
+        return released;
+    }
+
+    /**
+     * Stops the background threads of this cache. Objects that are disposed
+     * afterwards are reset by the disposing thread. If profile persistence
+     * is enabled, a final profile is written.
+     */
+    public void shutdown() {
+        setResetThreads(0);
+        setAdaptiveSizing(0, TimeUnit.SECONDS, 1);
+        setLeakDetection(0, TimeUnit.SECONDS, 0);
+        setMemoryPressureRelief(0, 0);
+        setProfilePersistence(null, 0, TimeUnit.SECONDS);
+        setAdaptiveReuse(0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates unused objects with the specified key until the cache owns the
+     * specified number of such objects. Creation stops early if the byte
+     * budget or a live object limit is reached.
+     * @param key the object key
+     * @param count the number of objects
+     * @return the number of objects that have been created
+     * @throws ClassNotSupportedException if no creator has been registered
+     */
+    public int prewarm(ObjectKey key, int count)
+            throws ClassNotSupportedException {
+        return grow(getCreator(key.getType()), getPool(key), count);
+    }
+
+    /**
+     * Pre-warms several keys (see
+     * {@link #prewarm(eu.mihosoft.vrl.playground.ObjectKey, int)}). The
+     * method returns after all objects have been created.
+     * @param counts the number of objects per key
+     * @param numThreads the number of threads that create objects in
+     *                   parallel (keys are created by the calling thread if
+     *                   this number is less than two)
+     * @return the number of objects that have been created
+     * @throws ClassNotSupportedException if no creator has been registered
+     *         for one of the keys (no object is created in this case)
+     */
+    public int prewarm(Map<? extends ObjectKey, Integer> counts,
+            int numThreads) throws ClassNotSupportedException {
+        for (ObjectKey key : counts.keySet()) {
+            getCreator(key.getType());
+        }
+
+        int result = 0;
+
+        if (numThreads < 2) {
+            for (Map.Entry<? extends ObjectKey, Integer> e : counts.entrySet()) {
+                result += prewarm(e.getKey(), e.getValue());
+            }
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                numThreads, new DaemonThreadFactory("ObjectCache-Prewarm-"));
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+
+        try {
+            for (final Map.Entry<? extends ObjectKey, Integer> e
+                    : counts.entrySet()) {
+                futures.add(executor.submit(new Callable<Integer>() {
+
+                    public Integer call() throws ClassNotSupportedException {
+                        return prewarm(e.getKey(), e.getValue());
+                    }
+                }));
+            }
+
+            for (Future<Integer> f : futures) {
+                result += f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw unwrap(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    /**
+     * Enables adaptive reuse. The creation and reset latencies of each key
+     * and the fraction of time spent in garbage collection are sampled
+     * periodically by a background thread. If resetting a disposed object
+     * of a key is more expensive than creating a new one, disposed objects
+     * of that key are dropped instead of being reset, i.e., requests are
+     * served by new objects once the unused objects have been used up. Every
+     * 64th disposed object is handled contrary to the decision to keep
+     * sampling both latencies. Objects without reset hook are always
+     * reused. The
+     * decisions are reported by {@link #getReuseDecisions()} and dropped
+     * objects are counted by {@link CacheStatistics#getBypasses()}.
+     * @param interval the sampling interval (adaptive reuse is disabled if
+     *                 the interval is zero, i.e., all objects are reused)
+     * @param unit the unit of the sampling interval
+     */
+    public synchronized void setAdaptiveReuse(long interval, TimeUnit unit) {
+        if (reuseAdvisor != null) {
+            reuseAdvisor.shutdown();
+            reuseAdvisor = null;
+        }
+        if (interval > 0) {
+            reuseAdvisor = new ReuseAdvisor(this, interval, unit);
+        }
+    }
+
+    /**
+     * Returns the current reuse decision of each key (see
+     * {@link #setAdaptiveReuse(long, java.util.concurrent.TimeUnit)}).
+     * @return the reuse decision of each key (empty if adaptive reuse is
+     *         disabled)
+     */
+    public Map<ObjectKey, ReuseDecision> getReuseDecisions() {
+        Map<ObjectKey, ReuseDecision> result =
+                new HashMap<ObjectKey, ReuseDecision>();
+
+        for (KeyPool pool : pools.values()) {
+            ReuseDecision d = pool.getReuseDecision();
+            if (d != null) {
+                result.put(pool.getKey(), d);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates whether a reset hook has been registered for the objects of
+     * the specified key.
+     * @param key the object key
+     * @return <code>true</code> if a reset hook has been registered;
+     *         <code>false</code> otherwise
+     */
+    boolean hasResetHook(ObjectKey key) {
+        return resetHooks.containsKey(key.getType());
+    }
+
+    /**
+     * Returns the reset hook of the objects of the specified key.
+     * @param key the object key
+     * @return the reset hook or <code>null</code> if no reset hook has been
+     *         registered
+     */
+    ResetHook getResetHook(ObjectKey key) {
+        return resetHooks.get(key.getType());
+    }
+
+    /**
+     * Returns the demand profile of this cache, i.e., the maximum number of
+     * objects per key that have been in use at the same time.
+     * @return the maximum number of objects in use per key (keys that have
+     *         never been in use are omitted)
+     */
+    public Map<ObjectKey, Integer> getDemandProfile() {
+        Map<ObjectKey, Integer> result = new HashMap<ObjectKey, Integer>();
+
+        for (KeyPool pool : pools.values()) {
+            int peak = pool.getPeak();
+            if (peak > 0) {
+                result.put(pool.getKey(), peak);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the demand profile of this cache (see
+     * {@link #getDemandProfile()}) to a file. Keys whose creator cannot
+     * convert them to parameters (see
+     * {@link ObjectCreator#toParams(eu.mihosoft.vrl.playground.ObjectKey)})
+     * are omitted. An existing file is replaced atomically. The profile that
+     * has been used for warm start (see
+     * {@link #warmStart(java.io.File, int)}) is merged with decayed counts,
+     * i.e., keys that are not requested anymore fade out over several runs.
+     * If no object has been in use yet, the file is not modified.
+     * @param file the profile file
+     * @throws IOException if the file cannot be written
+     */
+    public void saveProfile(File file) throws IOException {
+        Map<ObjectKey, Integer> counts = getDemandProfile();
+
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<ObjectKey, Integer> e : warmStartProfile.entrySet()) {
+            int decayed = (int) (e.getValue() * PROFILE_DECAY);
+            Integer observed = counts.get(e.getKey());
+
+            if (decayed > 0 && (observed == null || observed < decayed)) {
+                counts.put(e.getKey(), decayed);
+            }
+        }
+
+        DemandProfile.write(this, counts, file);
+    }
+
+    /**
+     * Enables profile persistence. The demand profile is written to the
+     * specified file periodically and when persistence is disabled or the
+     * cache is shut down (see {@link #shutdown()}).
+     * @param file the profile file (persistence is disabled if the file is
+     *             <code>null</code>)
+     * @param interval the interval between two snapshots (the profile is
+     *                 only written on shutdown if the interval is zero)
+     * @param unit the unit of the interval
+     */
+    public synchronized void setProfilePersistence(
+            File file, long interval, TimeUnit unit) {
+        if (profileWriter != null) {
+            profileWriter.shutdown();
+            profileWriter = null;
+        }
+        if (file != null) {
+            profileWriter = new ProfileWriter(this, file, interval, unit);
+        }
+    }
+
+    /**
+     * Pre-warms this cache with a demand profile that has been written by a
+     * previous run (see {@link #saveProfile(java.io.File)}). The profile is
+     * read by the calling thread. The objects are created in background,
+     * i.e., the method returns immediately. Keys of classes without creator
+     * are skipped.
+     * @param file the profile file (nothing is pre-warmed if the file does
+     *             not exist)
+     * @param numThreads the number of threads that create objects in
+     *                   parallel
+     * @return the number of objects that have been created (available after
+     *         pre-warming has finished)
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public Future<Integer> warmStart(File file, final int numThreads)
+            throws IOException {
+        final Map<ObjectKey, Integer> counts = file.exists()
+                ? DemandProfile.read(this, file)
+                : Collections.<ObjectKey, Integer>emptyMap();
+
+        warmStartProfile = Collections.unmodifiableMap(counts);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+                new DaemonThreadFactory("ObjectCache-WarmStart-"));
+
+        try {
+            return executor.submit(new Callable<Integer>() {
+
+                public Integer call() throws ClassNotSupportedException {
+                    return prewarm(counts, numThreads);
+                }
+            });
+        } finally {
+            // the thread terminates after pre-warming
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Creates unused objects until the pool owns the specified number of
+     * objects, the byte budget is reached or a live object limit is reached.
+     * @param creator the creator
+     * @param pool the pool
+     * @param count the number of objects
+     * @return the number of objects that have been created
+     */
+    private int grow(ObjectCreator creator, KeyPool pool, int count) {
+        int result = 0;
+
+        long estimate = lazyCreation
+                ? creator.estimateSize(pool.getKey()) : -1;
+
+        while (pool.getLive() < count && size.get() < maxSize
+                && reserve(pool)) {
+            ObjectEntry oE;
+
+            if (estimate < 0) {
+                oE = newEntry(creator, pool);
+            } else {
+                oE = new ObjectEntry(pool.getKey(), estimate);
+                add(oE);
+            }
+
+            if (!pool.offer(oE)) {
+                signalExhausted();
+            }
+            result++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Evicts unused objects of a pool until the pool owns at most the
+     * specified number of objects.
+     * @param pool the pool
+     * @param count the number of objects
+     */
+    private void shrink(KeyPool pool, int count) {
+        while (pool.getLive() > count) {
+            ObjectEntry victim = pool.selectVictim(evictionPolicy);
+
+            if (victim == null) {
+                break;
+            }
+
+            // the entry might have been checked out in the meantime
+            if (victim.tryEvict()) {
+                pool.remove(victim);
+                remove(victim);
+            }
+        }
+    }
+
+    /**
+     * Grows or shrinks a pool to the specified number of objects (used by
+     * adaptive sizing).
+     * @param pool the pool
+     * @param count the number of objects
+     */
+    void resize(KeyPool pool, int count) {
+        ObjectCreator creator = creators.get(pool.getKey().getType());
+
+        if (pool.getLive() < count && creator != null) {
+            grow(creator, pool, count);
+        } else {
+            shrink(pool, count);
+        }
+    }
+
+    /**
+     * @return the pools of all keys that have been requested so far
+     */
+    Collection<KeyPool> getPools() {
+        return pools.values();
+    }
+
+    /**
+     * Returns the maximum number of live objects per key.
+     * @return the maximum number of live objects per key
+     */
+    public int getMaxLiveObjectsPerKey() {
+        return maxLivePerKey;
+    }
+
+    /**
+     * Defines the maximum number of live objects per key, including objects
+     * that are in use. The default is <code>Integer.MAX_VALUE</code>, i.e.,
+     * the number is only limited by the byte budget. Lowering the limit does
+     * not remove objects that are in use.
+     * @param max the maximum number of live objects per key
+     */
+    public void setMaxLiveObjectsPerKey(int max) {
+        this.maxLivePerKey = max;
+    }
+
+    /**
+     * Returns the maximum number of live objects.
+     * @return the maximum number of live objects
+     */
+    public int getMaxLiveObjects() {
+        return maxLive;
+    }
+
+    /**
+     * Defines the maximum number of live objects of all keys, including
+     * objects that are in use. The default is <code>Integer.MAX_VALUE</code>,
+     * i.e., the number is only limited by the byte budget. If the limit is
+     * reached, unused objects of other keys are evicted before the exhaustion
+     * policy is applied.
+     * @param max the maximum number of live objects
+     */
+    public void setMaxLiveObjects(int max) {
+        this.maxLive = max;
+    }
+
+    /**
+     * Returns the number of live objects, including objects that are in use.
+     * @return the number of live objects
+     */
+    public int getLiveObjects() {
+        return live.get();
+    }
+
+    /**
+     * Returns the number of unused objects in the free lists. Objects in
+     * thread-local magazines are not included.
+     * @return the number of unused objects
+     */
+    int getUnusedObjects() {
+        int result = 0;
+        for (KeyPool pool : pools.values()) {
+            result += pool.size();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the exhaustion policy of this cache.
+     * @return the exhaustion policy of this cache
+     */
+    public ExhaustionPolicy getExhaustionPolicy() {
+        return exhaustionPolicy;
+    }
+
+    /**
+     * Defines how requests are served if the maximum number of live objects
+     * has been reached. The default is to block without timeout.
+     * @param policy the exhaustion policy
+     * @param timeout the maximum time to wait (only used by
+     *                {@link ExhaustionPolicy#BLOCK})
+     * @param unit the unit of the timeout
+     */
+    public void setExhaustionPolicy(ExhaustionPolicy policy,
+            long timeout, TimeUnit unit) {
+        this.exhaustionTimeout = unit.toNanos(timeout);
+        this.exhaustionPolicy = policy;
+    }
+
+    /**
+     * Returns the byte budget of this cache.
+     * @return the byte budget of this cache
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Defines the byte budget of this cache. Unused objects are evicted
+     * immediately if the new budget is exceeded.
+     * @param maxSize the byte budget to set
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        cleanup();
+    }
+
+    /**
+     * Returns the number of bytes of all objects owned by this cache,
+     * including objects that are in use.
+     * @return the number of bytes of all objects owned by this cache
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the eviction policy of this cache.
+     * @return the eviction policy of this cache
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * Defines the eviction policy of this cache.
+     * @param evictionPolicy the eviction policy to set
+     */
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    /**
+     * Returns the statistics of all objects of this cache.
+     * @return the statistics of this cache
+     */
+    public CacheStatistics getStatistics() {
+        CacheStatistics result = CacheStatistics.empty();
+
+        for (KeyPool pool : pools.values()) {
+            result = result.plus(pool.getStatistics().snapshot());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the statistics of all objects of the specified class.
+     * @param c the class
+     * @return the statistics of the specified class
+     */
+    public CacheStatistics getStatistics(Class<?> c) {
+        CacheStatistics result = CacheStatistics.empty();
+
+        for (KeyPool pool : pools.values()) {
+            if (pool.getKey().getType() == c) {
+                result = result.plus(pool.getStatistics().snapshot());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the statistics of all objects with the specified key.
+     * @param key the object key
+     * @return the statistics of the specified key
+     */
+    public CacheStatistics getStatistics(ObjectKey key) {
+        KeyPool pool = pools.get(key);
+        return pool == null
+                ? CacheStatistics.empty() : pool.getStatistics().snapshot();
+    }
+
+    /**
+     * Returns the statistics of each object key.
+     * @return the statistics of each object key
+     */
+    public Map<ObjectKey, CacheStatistics> getStatisticsByKey() {
+        Map<ObjectKey, CacheStatistics> result =
+                new HashMap<ObjectKey, CacheStatistics>();
+
+        for (KeyPool pool : pools.values()) {
+            result.put(pool.getKey(), pool.getStatistics().snapshot());
+        }
+
+        return result;
+    }
+
+    /**
+     * Registers an MBean that exports the statistics of this cache with the
+     * platform MBean server. The object name is
+     * <code>eu.mihosoft.vrl.playground:type=ObjectCache,name=</code>
+     * <i>name</i>.
+     * @param name the name of this cache
+     * @return the object name of the MBean
+     * @throws JMException if the MBean cannot be registered
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName(
+                "eu.mihosoft.vrl.playground:type=ObjectCache,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(
+                new ObjectCacheMonitor(this), objectName);
+        return objectName;
+    }
+
+    /**
+     * Disposes an object. The object is free to be returned by another
+     * <code>getInstance()</code> call. Lookups take constant time. If a reset
+     * hook has been registered for the class of the object it is called
+     * before the object is returned to the cache.
+     * @param o the object to dispose
+     * @throws IllegalArgumentException if the object is not owned by this
+     *         cache
+     * @throws IllegalStateException if the object has already been disposed
+     */
+    public void dispose(Object o) {
+        release(getEntry(o), o, true);
+    }
+
+    /**
+     * Returns an object that is in use to the cache.
+     * @param oE the entry of the object
+     * @param o the object
+     * @param reset defines whether to reset the object (the object is
+     *              returned without calling its reset hook otherwise)
+     * @throws IllegalStateException if the object has already been disposed
+     */
+    void release(ObjectEntry oE, Object o, boolean reset) {
+        oE.endLease(o);
+
+        if (!returnReleased(oE, oE.release(), reset)) {
+            throw new IllegalStateException(
+                    "Object has already been disposed: " + describe(o));
+        }
+    }
+
+    /**
+     * Returns an object to the cache if it is still in use by the specified
+     * checkout. Otherwise the method does nothing, i.e., the object has
+     * already been returned and may have been checked out again.
+     * @param oE the entry of the object
+     * @param o the object
+     * @param reset defines whether to reset the object (the object is
+     *              returned without calling its reset hook otherwise)
+     * @param generation the generation of the checkout
+     */
+    void release(ObjectEntry oE, Object o, boolean reset, int generation) {
+        // the lease belongs to the current checkout
+        if (oE.isCheckedOut(generation)) {
+            oE.endLease(o);
+            returnReleased(oE, oE.release(generation), reset);
+        }
+    }
+
+    /**
+     * Returns an entry to its free list or removes it after it has been
+     * marked as unused.
+     * @param oE the entry
+     * @param previousState the state before the entry has been released
+     * @param reset defines whether to reset the object
+     * @return <code>true</code> if the entry was in use;
+     *         <code>false</code> if it had already been released
+     */
+    private boolean returnReleased(ObjectEntry oE, int previousState,
+            boolean reset) {
+        if (previousState == ObjectEntry.IN_USE) {
+            KeyPool pool = getPool(oE.getKey());
+            pool.getStatistics().returns.increment();
+            if (!reset) {
+                offer(oE);
+            } else if (!drop(pool, oE)) {
+                recycle(oE);
+            }
+        } else if (previousState == ObjectEntry.RETIRED) {
+            // entry has been evicted while it was in use
+            getPool(oE.getKey()).getStatistics().returns.increment();
+            remove(oE);
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Disposes several objects (see {@link #dispose(java.lang.Object)}).
+     * Consecutive objects with the same key are returned to their free list
+     * with one lock acquisition. If an object cannot be disposed, the
+     * objects before it are disposed nevertheless.
+     * @param objects the objects to dispose
+     * @throws IllegalArgumentException if an object is not owned by this
+     *         cache
+     * @throws IllegalStateException if an object has already been disposed
+     */
+    public void disposeAll(Collection<?> objects) {
+        ObjectEntry[] batch = new ObjectEntry[objects.size()];
+        KeyPool batchPool = null;
+        int n = 0;
+
+        try {
+            for (Object o : objects) {
+                ObjectEntry oE = getEntry(o);
+                oE.endLease(o);
+
+                int previousState = oE.release();
+                KeyPool pool = getPool(oE.getKey());
+
+                if (previousState == ObjectEntry.RETIRED) {
+                    pool.getStatistics().returns.increment();
+                    remove(oE);
+                    continue;
+                } else if (previousState != ObjectEntry.IN_USE) {
+                    throw new IllegalStateException(
+                            "Object has already been disposed: " + describe(o));
+                }
+
+                pool.getStatistics().returns.increment();
+
+                if (drop(pool, oE) || !resetBeforeOffer(oE)) {
+                    continue;
+                }
+
+                if (pool != batchPool) {
+                    offerAll(batchPool, batch, n);
+                    batchPool = pool;
+                    n = 0;
+                }
+
+                batch[n++] = oE;
+            }
+        } finally {
+            offerAll(batchPool, batch, n);
+            cleanup();
+        }
+    }
+
+    /**
+     * Evicts a disposed entry instead of resetting it if the reuse decision
+     * of its key is to drop objects.
+     * @param pool the pool of the entry
+     * @param oE the unused entry
+     * @return <code>true</code> if the entry has been evicted;
+     *         <code>false</code> if it should be reset and reused
+     */
+    private boolean drop(KeyPool pool, ObjectEntry oE) {
+        if (!hasResetHook(oE.getKey()) || !pool.shouldDrop()
+                || !oE.tryEvict()) {
+            return false;
+        }
+
+        pool.getStatistics().bypasses.increment();
+        remove(oE);
+
+        return true;
+    }
+
+    /**
+     * Resets an unused entry by the calling thread. Entries that are reset in
+     * background are handed to the background threads. Entries whose reset
+     * fails are evicted.
+     * @param oE the entry to reset
+     * @return <code>true</code> if the entry has been reset and can be
+     *         returned to its free list; <code>false</code> otherwise
+     */
+    private boolean resetBeforeOffer(ObjectEntry oE) {
+        ResetHook hook = resetHooks.get(oE.getKey().getType());
+
+        if (hook != null) {
+            if (deferredReset) {
+                // the dirty region is kept until the entry is reset
+                oE.setResetPending(true);
+                return true;
+            } else if (resetter != null) {
+                recycle(oE);
+                return false;
+            } else if (!runHook(hook, oE)) {
+                if (oE.tryEvict()) {
+                    remove(oE);
+                }
+                return false;
+            }
+        }
+
+        oE.getDirtyRegion().reset();
+
+        return true;
+    }
+
+    /**
+     * Returns unused entries with the same key to their free list.
+     * @param pool the pool of the entries
+     * @param entries the entries
+     * @param n the number of entries
+     */
+    private void offerAll(KeyPool pool, ObjectEntry[] entries, int n) {
+        if (n > 0) {
+            pool.offerAll(entries, n);
+            signalExhausted();
+            limitUnsized(pool, entries[0]);
+        }
+    }
+
+    /**
+     * Returns the dirty region of an object that is in use. Reset hooks can
+     * use the region to reset only the modified part of an object. Callers
+     * that declare the region must add all modifications.
+     * @param o the object
+     * @return the dirty region of the object
+     * @throws IllegalArgumentException if the object is not owned by this
+     *         cache
+     */
+    public DirtyRegion getDirtyRegion(Object o) {
+        return getEntry(o).getDirtyRegion();
+    }
+
+    /**
+     * Creates a graphics object for an image that is in use. All drawing
+     * operations are recorded in the dirty region of the image.
+     * @param image the image
+     * @return a graphics object that records the modified region
+     * @throws IllegalArgumentException if the image is not owned by this
+     *         cache
+     */
+    public TrackingGraphics2D createGraphics(BufferedImage image) {
+        return new TrackingGraphics2D(
+                image.createGraphics(), getDirtyRegion(image));
+    }
+
+    /**
+     * Returns the entry of an object.
+     * @param o the object
+     * @return the entry of the object
+     * @throws IllegalArgumentException if the object is not owned by this
+     *         cache
+     */
+    ObjectEntry getEntry(Object o) {
+        ObjectEntry oE = instances.get(o);
+
+        if (oE == null) {
+            throw new IllegalArgumentException(
+                    "Object not owned by this cache: " + describe(o));
+        }
+
+        return oE;
+    }
+
+    /**
+     * Resets an unused entry and returns it to its free list. The entry is
+     * not reachable via the free list until it has been reset.
+     * @param oE the entry to recycle
+     */
+    private void recycle(final ObjectEntry oE) {
+        final ResetHook hook = resetHooks.get(oE.getKey().getType());
+        BackgroundResetter r = resetter;
+
+        if (hook == null) {
+            offer(oE);
+        } else if (deferredReset) {
+            oE.setResetPending(true);
+            offer(oE);
+        } else if (r == null) {
+            reset(hook, oE);
+        } else {
+            r.submit(new Runnable() {
+
+                public void run() {
+                    reset(hook, oE);
+                }
+            });
+        }
+    }
+
+    /**
+     * Resets an unused entry and returns it to its free list. If the reset
+     * fails the entry is evicted.
+     * @param hook the reset hook
+     * @param oE the entry to reset
+     */
+    private void reset(ResetHook hook, ObjectEntry oE) {
+        if (runHook(hook, oE)) {
+            offer(oE);
+        } else if (oE.tryEvict()) {
+            remove(oE);
+        }
+    }
+
+    /**
+     * Resets an entry that is in use by the calling thread. The entry stays
+     * in use, i.e., it is not returned to its free list.
+     * @param oE the entry to reset
+     * @return <code>true</code> if the entry has been reset;
+     *         <code>false</code> if the reset hook failed
+     */
+    boolean resetInUse(ObjectEntry oE) {
+        ResetHook hook = resetHooks.get(oE.getKey().getType());
+
+        if (hook != null && !runHook(hook, oE)) {
+            return false;
+        }
+
+        oE.getDirtyRegion().reset();
+
+        return true;
+    }
+
+    /**
+     * Runs a reset hook. Failures are logged.
+     * @param hook the reset hook
+     * @param oE the entry to reset
+     * @return <code>true</code> if the hook succeeded;
+     *         <code>false</code> otherwise
+     */
+    private boolean runHook(ResetHook hook, ObjectEntry oE) {
+        long start = System.nanoTime();
+
+        try {
+            hook.reset(oE);
+            getPool(oE.getKey()).getStatistics().resetLatency.record(
+                    System.nanoTime() - start);
+        } catch (RuntimeException ex) {
+            Logger.getLogger(ObjectCache.class.getName()).log(
+                    Level.SEVERE, "Cannot reset " + describe(oE.getObject()), ex);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns stashed entries that have already been reset to their free
+     * list. All entries must have the same key. The free list is locked only
+     * once. The array is used as scratch space.
+     * @param entries the entries to return
+     * @param n the number of entries to return
+     */
+    void releaseAll(ObjectEntry[] entries, int n) {
+        if (n == 0) {
+            return;
+        }
+
+        KeyPool pool = getPool(entries[0].getKey());
+        int numFree = 0;
+
+        // stashed entries have already been counted as returns
+        for (int i = 0; i < n; i++) {
+            ObjectEntry oE = entries[i];
+            oE.unstash();
+            int previousState = oE.release();
+            if (previousState == ObjectEntry.IN_USE) {
+                entries[numFree++] = oE;
+            } else if (previousState == ObjectEntry.RETIRED) {
+                remove(oE);
+            }
+        }
+
+        pool.offerAll(entries, numFree);
+        signalExhausted();
+        limitUnsized(pool, entries[0]);
+        cleanup();
+    }
+
+    /**
+     * Counts a request that has been served by a thread-local magazine.
+     * @param oE the entry that has been checked out
+     */
+    void countStashHit(ObjectEntry oE) {
+        getPool(oE.getKey()).getStatistics().hits.increment();
+    }
+
+    /**
+     * Counts an object that has been disposed into a thread-local magazine.
+     * @param oE the entry that has been stashed
+     */
+    void countStashReturn(ObjectEntry oE) {
+        getPool(oE.getKey()).getStatistics().returns.increment();
+    }
+
+    /**
+     * Returns an unused entry to its free list.
+     * @param oE the entry to return
+     */
+    private void offer(ObjectEntry oE) {
+        // the dirty region of entries with pending reset is still needed
+        if (!oE.isResetPending()) {
+            oE.getDirtyRegion().reset();
+        }
+        KeyPool pool = getPool(oE.getKey());
+        if (!pool.offer(oE)) {
+            signalExhausted();
+            limitUnsized(pool, oE);
+        }
+        cleanup();
+    }
+
+    /**
+     * Evicts the least recently used objects of a pool if the pool contains
+     * more than {@link #MAX_UNSIZED_ENTRIES} unused objects of unknown size.
+     * Such objects are not limited by the byte budget.
+     * @param pool the pool
+     * @param oE an entry of the pool
+     */
+    private void limitUnsized(KeyPool pool, ObjectEntry oE) {
+        if (oE.getSize() > 0 || pool.size() <= MAX_UNSIZED_ENTRIES) {
+            return;
+        }
+
+        List<ObjectEntry> victims = new ArrayList<ObjectEntry>();
+        pool.trim(MAX_UNSIZED_ENTRIES, victims);
+
+        for (ObjectEntry victim : victims) {
+            remove(victim);
+        }
+    }
+
+    /**
+     * Wakes a waiting thread if the total number of live objects has been
+     * reached, i.e., if waiting threads may evict a new unused object to make
+     * room.
+     */
+    private void signalExhausted() {
+        if (live.get() >= maxLive) {
+            signalAny();
+        }
+    }
+
+    /**
+     * Returns a short description of an object that does not depend on its
+     * <code>toString()</code> method.
+     * @param o the object
+     * @return a short description of the object
+     */
+    private static String describe(Object o) {
+        return o.getClass().getName() + "@"
+                + Integer.toHexString(System.identityHashCode(o));
+    }
+
+    /**
+     * Returns the pool of the specified key. The pool is created if it does
+     * not exist yet.
+     * @param key the object key
+     * @return the pool of the specified key
+     */
+    private KeyPool getPool(ObjectKey key) {
+        KeyPool pool = pools.get(key);
+
+        if (pool == null) {
+            KeyPool newPool = new KeyPool(key);
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+
+        return pool;
+    }
+
+    /**
+     * Returns the creator of the specified class.
+     * @param c the class
+     * @return the creator of the specified class
+     * @throws ClassNotSupportedException if no creator has been registered
+     */
+    ObjectCreator getCreator(Class<?> c)
+            throws ClassNotSupportedException {
+        ObjectCreator creator = creators.get(c);
+
+        if (creator == null) {
+            throw new ClassNotSupportedException(
+                    "No Creator for " + c.getName() + " found!");
+        }
+
+        return creator;
+    }
+
+    /**
+     * Returns the creator of the class with the specified name.
+     * @param className the class name
+     * @return the creator of the specified class or <code>null</code> if no
+     *         creator has been registered
+     */
+    ObjectCreator findCreator(String className) {
+        for (Map.Entry<Class<?>, ObjectCreator> e : creators.entrySet()) {
+            if (e.getKey().getName().equals(className)) {
+                return e.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates a new object and adds a corresponding object entry to the cache.
+     * The entry is marked as used. The object must have been counted as live
+     * object already (see {@link #reserve(eu.mihosoft.vrl.playground.KeyPool)}).
+     * @param creator the creator
+     * @param pool the pool of the object to create
+     * @return the new entry
+     */
+    private ObjectEntry createNewEntry(ObjectCreator creator, KeyPool pool) {
+        StatisticsRecorder stats = pool.getStatistics();
+        stats.misses.increment();
+
+        long start = System.nanoTime();
+        ObjectEntry oE = newEntry(creator, pool);
+        oE.tryAcquire();
+        pool.updatePeak();
+
+        stats.creationLatency.record(System.nanoTime() - start);
+        stats.creations.increment();
+
+        return oE;
+    }
+
+    /**
+     * Creates a new object and adds a corresponding unused object entry to
+     * the cache. The entry is not added to the free list. The object must
+     * have been counted as live object already.
+     * @param creator the creator
+     * @param pool the pool of the object to create
+     * @return the new entry
+     */
+    private ObjectEntry newEntry(ObjectCreator creator, KeyPool pool) {
+        ObjectEntry oE = null;
+
+        try {
+            oE = create(creator, pool.getKey());
+        } finally {
+            if (oE == null) {
+                unreserve(pool);
+            }
+        }
+
+        add(oE);
+
+        return oE;
+    }
+
+    /**
+     * Creates a new object entry.
+     * @param creator the creator
+     * @param key the key that specifies the object to create
+     * @return the new entry
+     * @throws IllegalStateException if the creator did not create an object
+     */
+    private static ObjectEntry create(ObjectCreator creator, ObjectKey key) {
+        ObjectEntry oE = creator.newInstance(key);
+
+        if (oE == null || oE.getObject() == null) {
+            throw new IllegalStateException(creator.getClass().getName()
+                    + " did not create an object for key " + key);
+        }
+
+        return oE;
+    }
+
+    /**
+     * Adds an object entry to the cache.
+     * @param oEntry the entry to add
+     */
+    private void add(ObjectEntry oEntry) {
+        // placeholders are indexed when their object is created
+        if (oEntry.isMaterialized()) {
+            instances.put(oEntry);
+        }
+        size.addAndGet(oEntry.getSize());
+        cleanup();
+    }
+
+    /**
+     * Removes an evicted object entry from the cache. Resources of the object
+     * are released by its creator.
+     * @param oEntry the entry to remove
+     */
+    private void remove(ObjectEntry oEntry) {
+        KeyPool pool = getPool(oEntry.getKey());
+
+        if (oEntry.isMaterialized()) {
+            instances.remove(oEntry);
+        }
+        size.addAndGet(-oEntry.getSize());
+        pool.getStatistics().evictions.increment();
+        unreserve(pool);
+
+        ObjectCreator creator = creators.get(oEntry.getKey().getType());
+
+        // objects that became unreachable cannot be destroyed explicitly
+        if (creator != null && oEntry.getObject() != null) {
+            creator.destroy(oEntry);
+        }
+    }
+
+    /**
+     * Evicts unused instances until the byte budget is met or no unused
+     * instance is left.
+     */
+    private void cleanup() {
+        while (size.get() > maxSize && evictOne()) {
+            // continue
+        }
+    }
+
+    /**
+     * Evicts the unused instance that should be evicted first according to
+     * the eviction policy.
+     * @return <code>true</code> if an unused instance has been found (it
+     *         might have been checked out before it could be evicted);
+     *         <code>false</code> if no unused instance is left
+     */
+    private boolean evictOne() {
+        EvictionPolicy policy = evictionPolicy;
+        KeyPool victimPool = null;
+        ObjectEntry victim = null;
+
+        for (KeyPool pool : pools.values()) {
+            ObjectEntry candidate = pool.selectVictim(policy);
+            if (candidate != null && (victim == null
+                    || policy.compare(candidate, victim) < 0)) {
+                victim = candidate;
+                victimPool = pool;
+            }
+        }
+
+        if (victim == null) {
+            return false;
+        }
+
+        // the entry might have been checked out in the meantime
+        if (victim.tryEvict()) {
+            victimPool.remove(victim);
+            remove(victim);
+        }
+
+        return true;
+    }
+} // end class
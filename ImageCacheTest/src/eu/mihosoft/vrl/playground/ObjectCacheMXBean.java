@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.Map;
+
+/**
+ * JMX interface of an object cache.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public interface ObjectCacheMXBean {
+
+    /**
+     * @return the statistics of all objects of the cache
+     */
+    CacheStatistics getStatistics();
+
+    /**
+     * @return the statistics of each object key (the map keys are the
+     *         string representations of the object keys)
+     */
+    Map<String, CacheStatistics> getKeyStatistics();
+
+    /**
+     * @return the reuse decision of each key (the map keys are the string
+     *         representations of the object keys)
+     */
+    Map<String, ReuseDecision> getReuseDecisions();
+
+    /**
+     * @return the number of bytes of all objects owned by the cache
+     */
+    long getSize();
+
+    /**
+     * @return the byte budget of the cache
+     */
+    long getMaxSize();
+
+    /**
+     * @return the number of live objects, including objects that are in use
+     */
+    int getLiveObjects();
+
+    /**
+     * @return the number of objects that wait for being reset
+     */
+    int getPendingResets();
+
+    /**
+     * @return the average reset latency (in nanoseconds)
+     */
+    long getAverageResetLatency();
+}
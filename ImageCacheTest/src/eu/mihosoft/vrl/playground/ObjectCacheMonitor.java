@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exports the statistics of an object cache via JMX.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class ObjectCacheMonitor implements ObjectCacheMXBean {
+
+    private final ObjectCache cache;
+
+    /**
+     * Constructor.
+     * @param cache the cache to monitor
+     */
+    ObjectCacheMonitor(ObjectCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return cache.getStatistics();
+    }
+
+    @Override
+    public Map<String, CacheStatistics> getKeyStatistics() {
+        Map<String, CacheStatistics> result =
+                new HashMap<String, CacheStatistics>();
+
+        for (Map.Entry<ObjectKey, CacheStatistics> e
+                : cache.getStatisticsByKey().entrySet()) {
+            result.put(e.getKey().toString(), e.getValue());
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<String, ReuseDecision> getReuseDecisions() {
+        Map<String, ReuseDecision> result =
+                new HashMap<String, ReuseDecision>();
+
+        for (Map.Entry<ObjectKey, ReuseDecision> e
+                : cache.getReuseDecisions().entrySet()) {
+            result.put(e.getKey().toString(), e.getValue());
+        }
+
+        return result;
+    }
+
+    @Override
+    public long getSize() {
+        return cache.getSize();
+    }
+
+    @Override
+    public long getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    @Override
+    public int getLiveObjects() {
+        return cache.getLiveObjects();
+    }
+
+    @Override
+    public int getPendingResets() {
+        return cache.getPendingResets();
+    }
+
+    @Override
+    public long getAverageResetLatency() {
+        return cache.getAverageResetLatency();
+    }
+}
@@ -64,5 +64,74 @@ public abstract class ObjectCreator {
         this.params = params;
     }
 
-    public abstract ObjectEntry newInstance(Object... params);
+    /**
+     * Converts creation parameters to an object key. The default
+     * implementation compares the parameters element-wise. Subclasses should
+     * return a specialized key if the parameters are primitive values.
+     * @param params the creation parameters
+     * @return the object key
+     */
+    public ObjectKey createKey(Object... params) {
+        return new ParamsKey(getType(), params);
+    }
+
+    /**
+     * Converts an object key back to creation parameters, i.e.,
+     * <code>createKey(toParams(key))</code> equals <code>key</code>. The
+     * parameters are used to persist demand profiles (see
+     * {@link ObjectCache#saveProfile(java.io.File)}). The default
+     * implementation supports keys of type {@link ParamsKey}.
+     * @param key the object key
+     * @return the creation parameters or <code>null</code> if the key cannot
+     *         be expressed by parameters
+     */
+    public Object[] toParams(ObjectKey key) {
+        if (!(key instanceof ParamsKey)) {
+            return null;
+        }
+
+        ParamsKey pKey = (ParamsKey) key;
+        Object[] result = new Object[pKey.getNumberOfParams()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = pKey.getParam(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a new object.
+     * @param key the key that specifies the object to create
+     * @return an entry that contains the new object
+     */
+    public abstract ObjectEntry newInstance(ObjectKey key);
+
+    /**
+     * Returns the memory size of the object that would be created for the
+     * specified key without creating it. The cache uses the estimate to
+     * account for placeholder entries (see
+     * {@link ObjectCache#setLazyCreation(boolean)}). The default
+     * implementation returns <code>-1</code>, i.e., objects of this creator
+     * are always created eagerly.
+     * @param key the key that specifies the object
+     * @return the estimated memory size (in bytes) or <code>-1</code> if
+     *         the size is unknown
+     */
+    public long estimateSize(ObjectKey key) {
+        return -1;
+    }
+
+    /**
+     * Releases resources of an object that has been evicted from the cache.
+     * The object must not be used afterwards. The method is not called for
+     * objects that became unreachable without being disposed (see
+     * {@link ObjectCache#setLeakDetection(long,
+     * java.util.concurrent.TimeUnit, int)}). The default implementation
+     * does nothing.
+     * @param oE the entry of the evicted object
+     */
+    public void destroy(ObjectEntry oE) {
+        //
+    }
 }
@@ -29,40 +29,239 @@
 
 package eu.mihosoft.vrl.playground;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Object Entry.
  * @author Michael Hoffer <info@michaelhoffer.de>
  */
 public class ObjectEntry {
-    private Object object;
-    private boolean inUse;
-    private String params;
+
+    /**
+     * The entry is in the cache and can be checked out.
+     */
+    static final int FREE = 0;
+    /**
+     * The entry is checked out.
+     */
+    static final int IN_USE = 1;
+    /**
+     * The entry is checked out but has been evicted. It will not be returned
+     * to the free list when it is disposed.
+     */
+    static final int RETIRED = 2;
+    /**
+     * The entry has been removed from the cache.
+     */
+    static final int EVICTED = 3;
+    /**
+     * The entry has been disposed and is kept by a thread-local layer. The
+     * cache considers it as used.
+     */
+    static final int STASHED = 4;
+    // the lower bits of the state field hold the state, the upper bits
+    // count the checkouts (generation)
+    private static final int STATE_BITS = 3;
+    private static final int STATE_MASK = (1 << STATE_BITS) - 1;
+
+    private volatile Object object;
+    private volatile Lease lease;
+    private volatile boolean materialized;
+    private volatile boolean resetPending;
+    private int identityHash;
+    private final AtomicInteger state = new AtomicInteger(FREE);
+    private final ObjectKey key;
+    private volatile long size;
+    private volatile long lastUsed = System.nanoTime();
+    private volatile int useCount;
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+    // next entry of the same bucket of the identity index
+    ObjectEntry indexNext;
+
+    /**
+     * Constructor. The memory size of the object is unknown, i.e., the
+     * object is not limited by the byte budget of the cache. Instead, at
+     * most 30 unused objects of unknown size are kept per key.
+     * @param object object of this entry
+     * @param key key that identifies the parameters used for object creation
+     */
+    public ObjectEntry(Object object, ObjectKey key) {
+        this(object, key, 0);
+    }
 
     /**
      * Constructor.
      * @param object object of this entry
-     * @param params parameters used for object creation
+     * @param key key that identifies the parameters used for object creation
+     * @param size the memory size of the object (in bytes)
      */
-    public ObjectEntry(Object object, Object... params) {
+    public ObjectEntry(Object object, ObjectKey key, long size) {
         this.object = object;
-        this.params = paramsToString(params);
+        this.key = key;
+        this.size = size;
+        this.identityHash = System.identityHashCode(object);
+        this.materialized = true;
     }
 
-    public static String paramsToString(Object... params) {
-        String result = "";
+    /**
+     * Constructor. Creates a placeholder entry whose object is created when
+     * the entry is checked out for the first time (see
+     * {@link #materialize(eu.mihosoft.vrl.playground.ObjectEntry)}).
+     * @param key key that identifies the parameters used for object creation
+     * @param size the estimated memory size of the object (in bytes)
+     */
+    ObjectEntry(ObjectKey key, long size) {
+        this.key = key;
+        this.size = size;
+    }
 
-        for (Object p : params) {
-            result+=p.toString()+":";
-        }
+    /**
+     * Indicates whether the object of this entry has been created.
+     * @return <code>true</code> if the object has been created;
+     *         <code>false</code> if this entry is a placeholder
+     */
+    boolean isMaterialized() {
+        return materialized;
+    }
 
-        return result;
+    /**
+     * Takes over the object of a newly created entry. Only the owner of a
+     * placeholder entry may call this method.
+     * @param created the entry that contains the new object
+     */
+    void materialize(ObjectEntry created) {
+        object = created.object;
+        size = created.size;
+        identityHash = created.identityHash;
+        materialized = true;
     }
 
     /**
-     * @return the object
+     * Indicates whether the object has been returned without being reset,
+     * i.e., whether it has to be reset before it is checked out again.
+     * @return <code>true</code> if the reset is pending;
+     *         <code>false</code> otherwise
+     */
+    boolean isResetPending() {
+        return resetPending;
+    }
+
+    /**
+     * @param resetPending defines whether the object has to be reset before
+     *                     it is checked out again
+     */
+    void setResetPending(boolean resetPending) {
+        this.resetPending = resetPending;
+    }
+
+    /**
+     * @return the object or <code>null</code> if the object has been leased
+     *         and became unreachable
      */
     public Object getObject() {
-        return object;
+        Object o = object;
+        if (o == null) {
+            Lease l = lease;
+            if (l != null) {
+                o = l.get();
+            }
+        }
+        return o;
+    }
+
+    /**
+     * @return the identity hash code of the object
+     */
+    int getIdentityHash() {
+        return identityHash;
+    }
+
+    /**
+     * Replaces the strong reference to the object by a lease, i.e., the
+     * entry does not prevent the object from being garbage collected while
+     * it is in use.
+     * @param l the lease (must refer to the object)
+     */
+    void startLease(Lease l) {
+        lease = l;
+        object = null;
+    }
+
+    /**
+     * Replaces the lease by a strong reference to the object.
+     * @param o the object
+     */
+    void endLease(Object o) {
+        object = o;
+        Lease l = lease;
+        if (l != null) {
+            lease = null;
+            l.clear();
+        }
+    }
+
+    /**
+     * @return the current lease or <code>null</code> if the object is not
+     *         leased
+     */
+    Lease getLease() {
+        return lease;
+    }
+
+    /**
+     * Removes an entry whose object became unreachable while it was in use.
+     * @return <code>true</code> if the entry was in use and is evicted now;
+     *         <code>false</code> otherwise
+     */
+    boolean reclaim() {
+        return transition(IN_USE, EVICTED) || transition(RETIRED, EVICTED);
+    }
+
+    /**
+     * Changes the state of this entry. The generation is incremented if the
+     * entry is checked out.
+     * @param from the expected state
+     * @param to the new state
+     * @return <code>true</code> if the state has been changed;
+     *         <code>false</code> if the entry was not in the expected state
+     */
+    private boolean transition(int from, int to) {
+        for (;;) {
+            int v = state.get();
+            if ((v & STATE_MASK) != from) {
+                return false;
+            }
+            int next = (v & ~STATE_MASK) | to;
+            if (to == IN_USE) {
+                next += 1 << STATE_BITS;
+            }
+            if (state.compareAndSet(v, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the generation of this entry, i.e., the number of checkouts
+     * (modulo 2^29). The generation identifies the current checkout.
+     * @return the generation of this entry
+     */
+    int getGeneration() {
+        return state.get() >>> STATE_BITS;
+    }
+
+    /**
+     * Indicates whether the specified checkout is still in progress.
+     * @param generation the generation of the checkout
+     * @return <code>true</code> if the entry is in use (or has been evicted
+     *         while in use) by the specified checkout;
+     *         <code>false</code> otherwise
+     */
+    boolean isCheckedOut(int generation) {
+        int v = state.get();
+        int s = v & STATE_MASK;
+        return (v >>> STATE_BITS) == generation
+                && (s == IN_USE || s == RETIRED);
     }
 
 
@@ -70,20 +269,154 @@ public class ObjectEntry {
      * @return the inUse
      */
     public boolean isInUse() {
-        return inUse;
+        int s = getState();
+        return s == IN_USE || s == RETIRED || s == STASHED;
+    }
+
+    /**
+     * @return the state of this entry
+     */
+    int getState() {
+        return state.get() & STATE_MASK;
+    }
+
+    /**
+     * Marks this entry as used if it is currently unused. Only one thread can
+     * succeed for a given unused entry.
+     * @return <code>true</code> if the entry has been acquired by the calling
+     *         thread; <code>false</code> if it is already in use or evicted
+     */
+    boolean tryAcquire() {
+        if (transition(FREE, IN_USE)) {
+            // only the owner thread modifies the counter
+            useCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks an entry that is in use as stashed.
+     * @return <code>true</code> if the entry was in use;
+     *         <code>false</code> otherwise
+     */
+    boolean stash() {
+        return transition(IN_USE, STASHED);
+    }
+
+    /**
+     * Marks a stashed entry as used.
+     * @return <code>true</code> if the entry was stashed;
+     *         <code>false</code> otherwise
+     */
+    boolean unstash() {
+        return transition(STASHED, IN_USE);
+    }
+
+    /**
+     * Marks this entry as unused.
+     * @return the previous state, i.e., <code>IN_USE</code> if the entry
+     *         can be returned to the free list, <code>RETIRED</code> if it
+     *         has been evicted while in use and <code>FREE</code> or
+     *         <code>EVICTED</code> if it has already been released
+     */
+    int release() {
+        return release(-1);
+    }
+
+    /**
+     * Marks this entry as unused if it is still in use by the specified
+     * checkout (see {@link #release()}).
+     * @param generation the generation of the checkout (<code>-1</code>
+     *                   matches any checkout)
+     * @return the previous state or <code>FREE</code> if the checkout has
+     *         already ended
+     */
+    int release(int generation) {
+        for (;;) {
+            int v = state.get();
+            if (generation >= 0 && (v >>> STATE_BITS) != generation) {
+                return FREE;
+            }
+            int s = v & STATE_MASK;
+            if (s == IN_USE) {
+                lastUsed = System.nanoTime();
+                if (state.compareAndSet(v, (v & ~STATE_MASK) | FREE)) {
+                    return IN_USE;
+                }
+            } else if (s == RETIRED) {
+                if (state.compareAndSet(v, (v & ~STATE_MASK) | EVICTED)) {
+                    return RETIRED;
+                }
+            } else {
+                return s;
+            }
+        }
+    }
+
+    /**
+     * Removes this entry from the cache if it is unused.
+     * @return <code>true</code> if the entry was unused and is evicted now;
+     *         <code>false</code> otherwise
+     */
+    boolean tryEvict() {
+        return transition(FREE, EVICTED);
+    }
+
+    /**
+     * Removes this entry from the cache.
+     * @return <code>true</code> if the entry was unused and is evicted now;
+     *         <code>false</code> if it is in use and will be evicted when it
+     *         is disposed
+     */
+    boolean evict() {
+        for (;;) {
+            if (tryEvict()) {
+                return true;
+            }
+            if (transition(IN_USE, RETIRED)) {
+                return false;
+            }
+            int s = getState();
+            if (s == RETIRED || s == EVICTED) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return the memory size of the object (in bytes; estimated if the
+     *         object has not been created yet)
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the time of the last return (see <code>System.nanoTime()</code>)
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * @return the number of checkouts of this entry
+     */
+    public int getUseCount() {
+        return useCount;
     }
 
     /**
-     * @param inUse the inUse to set
+     * @return the region that has been modified since the last checkout
      */
-    void setInUse(boolean inUse) {
-        this.inUse = inUse;
+    public DirtyRegion getDirtyRegion() {
+        return dirtyRegion;
     }
 
     /**
-     * @return the params
+     * @return the key
      */
-    public String getParams() {
-        return params;
+    public ObjectKey getKey() {
+        return key;
     }
 }
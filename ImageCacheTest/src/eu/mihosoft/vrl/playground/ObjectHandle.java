@@ -0,0 +1,133 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * Handle of an object that has been checked out (see
+ * {@link ObjectCache#getHandle(eu.mihosoft.vrl.playground.ObjectKey,
+ * java.lang.Class)}). Closing the handle returns the object to the cache.
+ * The handle refers to the entry of the object directly, i.e., the return
+ * does not have to look up the entry. Closing a handle more than once has
+ * no effect. Handles are intended to be used with try-with-resources:
+ * </p>
+ * <pre>
+ * try (ObjectHandle&lt;BufferedImage&gt; h = pool.acquireHandle(key)) {
+ *     BufferedImage img = h.get();
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * Handles can carry reset hints: the dirty region of the object (see
+ * {@link #getDirtyRegion()}) and whether the object has to be reset at all
+ * (see {@link #markClean()}).
+ * </p>
+ * @param <T> the object type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class ObjectHandle<T> implements AutoCloseable {
+
+    private final ObjectCache cache;
+    private final ObjectEntry entry;
+    private final T object;
+    private final int generation;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile boolean resetNeeded = true;
+
+    /**
+     * Constructor.
+     * @param cache the cache that owns the object
+     * @param entry the entry of the object
+     * @param object the object
+     * @param generation the generation of the checkout
+     */
+    ObjectHandle(ObjectCache cache, ObjectEntry entry, T object,
+            int generation) {
+        this.cache = cache;
+        this.entry = entry;
+        this.object = object;
+        this.generation = generation;
+    }
+
+    /**
+     * @return the object
+     * @throws IllegalStateException if the handle has been closed
+     */
+    public T get() {
+        if (closed.get()) {
+            throw new IllegalStateException("Handle has been closed!");
+        }
+        return object;
+    }
+
+    /**
+     * Returns the dirty region of the object. Reset hooks can use the region
+     * to reset only the modified part of the object (see
+     * {@link ObjectCache#getDirtyRegion(java.lang.Object)}).
+     * @return the dirty region of the object
+     */
+    public DirtyRegion getDirtyRegion() {
+        return entry.getDirtyRegion();
+    }
+
+    /**
+     * Declares that the object does not have to be reset when it is
+     * returned, e.g., because it has not been modified or because every
+     * user overwrites it completely. The reset hook is not called in this
+     * case.
+     */
+    public void markClean() {
+        resetNeeded = false;
+    }
+
+    /**
+     * Indicates whether this handle has been closed.
+     * @return <code>true</code> if the object has been returned;
+     *         <code>false</code> otherwise
+     */
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Returns the object to the cache. Subsequent calls have no effect. If
+     * the object has already been returned otherwise (e.g. via
+     * {@link ObjectCache#dispose(java.lang.Object)}), the call has no effect
+     * either, even if the object has been checked out again in the meantime.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            cache.release(entry, object, resetNeeded, generation);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.Arrays;
+
+/**
+ * Generic object key that compares the creation parameters element-wise.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class ParamsKey extends ObjectKey {
+
+    private final Class<?> type;
+    private final Object[] params;
+    private final int hash;
+
+    /**
+     * Constructor.
+     * @param type the class of the objects identified by this key
+     * @param params the parameters used for object creation
+     */
+    public ParamsKey(Class<?> type, Object... params) {
+        this.type = type;
+        this.params = params.clone();
+        this.hash = 31 * type.hashCode() + Arrays.hashCode(this.params);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the parameter with the specified index.
+     * @param i the parameter index
+     * @return the parameter with the specified index
+     */
+    public Object getParam(int i) {
+        return params[i];
+    }
+
+    /**
+     * @return the number of parameters
+     */
+    public int getNumberOfParams() {
+        return params.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ParamsKey)) {
+            return false;
+        }
+        ParamsKey other = (ParamsKey) o;
+        return hash == other.hash && type == other.type
+                && Arrays.equals(params, other.params);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return type.getSimpleName() + Arrays.toString(params);
+    }
+}
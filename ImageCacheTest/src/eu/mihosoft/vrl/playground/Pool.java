@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Type-safe view of the objects of one class in an object cache.
+ * @param <T> the type of the pooled objects
+ * @param <K> the key type
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class Pool<T, K extends ObjectKey> {
+
+    private final ObjectCache cache;
+    private final Class<T> type;
+
+    /**
+     * Constructor.
+     * @param cache the cache (a creator for the specified type must be
+     *              registered)
+     * @param type the type of the pooled objects
+     */
+    public Pool(ObjectCache cache, Class<T> type) {
+        this.cache = cache;
+        this.type = type;
+    }
+
+    /**
+     * @return the cache of this pool
+     */
+    public ObjectCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the type of the pooled objects
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Returns an object that matches the given key (see
+     * {@link ObjectCache#getInstance(eu.mihosoft.vrl.playground.ObjectKey)}).
+     * This method does not allocate memory if the object is served from the
+     * cache.
+     * @param key the key that specifies the requested object
+     * @return an object that matches the given key
+     * @throws ClassNotSupportedException if no creator has been registered
+     */
+    public T acquire(K key) throws ClassNotSupportedException {
+        return type.cast(cache.getInstance(key));
+    }
+
+    /**
+     * Returns a handle of an object that matches the given key (see
+     * {@link ObjectCache#getHandle(eu.mihosoft.vrl.playground.ObjectKey,
+     * java.lang.Class)}). Closing the handle returns the object.
+     * @param key the key that specifies the requested object
+     * @return a handle of an object that matches the given key
+     * @throws ClassNotSupportedException if no creator has been registered
+     */
+    public ObjectHandle<T> acquireHandle(K key)
+            throws ClassNotSupportedException {
+        return cache.getHandle(key, type);
+    }
+
+    /**
+     * Returns several objects that match the given key (see
+     * {@link ObjectCache#getInstances(eu.mihosoft.vrl.playground.ObjectKey,
+     * int, boolean)}).
+     * @param key the key that specifies the requested objects
+     * @param n the number of objects
+     * @param parallel defines whether to create missing objects in parallel
+     * @return <code>n</code> objects that match the given key
+     * @throws ClassNotSupportedException if no creator has been registered
+     */
+    public List<T> acquireAll(K key, int n, boolean parallel)
+            throws ClassNotSupportedException {
+        List<Object> objects = cache.getInstances(key, n, parallel);
+        List<T> result = new ArrayList<T>(objects.size());
+
+        for (Object o : objects) {
+            result.add(type.cast(o));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns several objects that match the given key. Missing objects are
+     * created by the calling thread.
+     * @param key the key that specifies the requested objects
+     * @param n the number of objects
+     * @return <code>n</code> objects that match the given key
+     * @throws ClassNotSupportedException if no creator has been registered
+     */
+    public List<T> acquireAll(K key, int n) throws ClassNotSupportedException {
+        return acquireAll(key, n, false);
+    }
+
+    /**
+     * Returns an object to the cache (see
+     * {@link ObjectCache#dispose(java.lang.Object)}).
+     * @param object the object to return
+     */
+    public void release(T object) {
+        cache.dispose(object);
+    }
+
+    /**
+     * Returns several objects to the cache (see
+     * {@link ObjectCache#disposeAll(java.util.Collection)}).
+     * @param objects the objects to return
+     */
+    public void releaseAll(Collection<? extends T> objects) {
+        cache.disposeAll(objects);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Adapts the capacity of each key to the observed demand. The demand of a key
+ * is sampled periodically. It is the maximum number of entries that have been
+ * in use at the same time since the last sample plus headroom for keys that
+ * missed since the last sample. Objects that have been created on a miss are
+ * already part of the in-use peak, i.e., the miss term is capped at half of
+ * the peak. Keys with high miss rates grow by at most 50% beyond their peak
+ * per sample. The target capacity of a key is the maximum demand of a
+ * sliding window of samples. Keys below their target are pre-warmed. Unused
+ * entries of keys above their target are evicted, i.e., idle keys shrink
+ * after the window has passed. The window of a new key is initialized with
+ * its current capacity, i.e., pre-warmed keys are kept for at least one
+ * window.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class PoolSizer {
+
+    private final ObjectCache cache;
+    private final int windowSize;
+    private final ScheduledExecutorService executor;
+    // only accessed by the sizer thread
+    private final Map<KeyPool, Window> windows = new HashMap<KeyPool, Window>();
+    private int index;
+
+    /**
+     * Constructor.
+     * @param cache the cache to resize
+     * @param interval the sampling interval
+     * @param unit the unit of the sampling interval
+     * @param windowSize the number of samples per window
+     */
+    PoolSizer(ObjectCache cache, long interval, TimeUnit unit, int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException(
+                    "Window size must be positive: " + windowSize);
+        }
+
+        this.cache = cache;
+        this.windowSize = windowSize;
+
+        for (KeyPool pool : cache.getPools()) {
+            windows.put(pool, new Window(windowSize, pool.getLive(),
+                    pool.getStatistics().misses.sum()));
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("ObjectCache-Sizer-"));
+        executor.scheduleWithFixedDelay(new Runnable() {
+
+            public void run() {
+                try {
+                    update();
+                } catch (RuntimeException ex) {
+                    // keep the periodic task alive
+                    Logger.getLogger(PoolSizer.class.getName()).log(
+                            Level.SEVERE, "Cannot resize cache", ex);
+                }
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Samples the demand of each key and resizes the keys accordingly.
+     */
+    private void update() {
+        for (KeyPool pool : cache.getPools()) {
+            Window w = windows.get(pool);
+
+            if (w == null) {
+                // the key has been requested after sizing has been enabled
+                w = new Window(windowSize, pool.getLive(), 0);
+                windows.put(pool, w);
+            }
+
+            int peak = pool.sampleDemand();
+            long misses = pool.getStatistics().misses.sum();
+            int headroom = (int) Math.min(misses - w.misses, (peak + 1) / 2);
+            w.demand[index] = peak + headroom;
+            w.misses = misses;
+
+            int target = 0;
+            for (int d : w.demand) {
+                target = Math.max(target, d);
+            }
+
+            cache.resize(pool, target);
+        }
+
+        index = (index + 1) % windowSize;
+    }
+
+    /**
+     * Stops the sizer thread.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Demand samples of one key.
+     */
+    private static class Window {
+
+        private final int[] demand;
+        private long misses;
+
+        Window(int size, int initialDemand, long misses) {
+            demand = new int[size];
+            Arrays.fill(demand, initialDemand);
+            this.misses = misses;
+        }
+    }
+}
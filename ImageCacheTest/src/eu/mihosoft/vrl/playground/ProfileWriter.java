@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the demand profile of a cache periodically and when it is shut
+ * down (see {@link ObjectCache#setProfilePersistence(java.io.File, long,
+ * java.util.concurrent.TimeUnit)}).
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class ProfileWriter {
+
+    private final ObjectCache cache;
+    private final File file;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Constructor.
+     * @param cache the cache
+     * @param file the profile file
+     * @param interval the interval between two snapshots (the profile is only
+     *                 written on shutdown if the interval is zero)
+     * @param unit the unit of the interval
+     */
+    ProfileWriter(ObjectCache cache, File file, long interval, TimeUnit unit) {
+        this.cache = cache;
+        this.file = file;
+
+        if (interval > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(
+                    new DaemonThreadFactory("ObjectCache-Profile-"));
+            executor.scheduleWithFixedDelay(new Runnable() {
+
+                public void run() {
+                    save();
+                }
+            }, interval, interval, unit);
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Writes the profile. Failures are logged.
+     */
+    private void save() {
+        try {
+            cache.saveProfile(file);
+        } catch (IOException ex) {
+            Logger.getLogger(ProfileWriter.class.getName()).log(
+                    Level.SEVERE, "Cannot write profile " + file, ex);
+        } catch (RuntimeException ex) {
+            // keep the periodic task alive
+            Logger.getLogger(ProfileWriter.class.getName()).log(
+                    Level.SEVERE, "Cannot write profile " + file, ex);
+        }
+    }
+
+    /**
+     * Stops the writer thread and writes a final snapshot.
+     */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        save();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides per key whether disposed objects are reset and reused or dropped.
+ * The creation and reset latencies of each key are sampled periodically and
+ * smoothed by an exponential moving average. The creation latency is
+ * inflated by the fraction of time spent in garbage collection, i.e.,
+ * allocating becomes more expensive if the collector is busy. Objects are
+ * reused as long as resetting them is cheaper than allocating new ones. A
+ * decision only changes if the other option is cheaper by a margin to avoid
+ * oscillation. Keys without samples are reused.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class ReuseAdvisor {
+
+    private static final double SMOOTHING = 0.5;
+    private static final double MARGIN = 0.1;
+    private static final double MAX_GC_OVERHEAD = 0.9;
+    private final ObjectCache cache;
+    private final ScheduledExecutorService executor;
+    // only accessed by the advisor thread
+    private final Map<KeyPool, Costs> costs = new HashMap<KeyPool, Costs>();
+    private long lastTime = System.nanoTime();
+    private long lastGcTime = gcTime();
+
+    /**
+     * Constructor.
+     * @param cache the cache to advise
+     * @param interval the sampling interval
+     * @param unit the unit of the sampling interval
+     */
+    ReuseAdvisor(ObjectCache cache, long interval, TimeUnit unit) {
+        this.cache = cache;
+
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("ObjectCache-Reuse-"));
+        executor.scheduleWithFixedDelay(new Runnable() {
+
+            public void run() {
+                try {
+                    update();
+                } catch (RuntimeException ex) {
+                    // keep the periodic task alive
+                    Logger.getLogger(ReuseAdvisor.class.getName()).log(
+                            Level.SEVERE, "Cannot update reuse decisions", ex);
+                }
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Samples the costs of each key and updates the decisions.
+     */
+    private void update() {
+        long time = System.nanoTime();
+        long gc = gcTime();
+        double gcOverhead = time > lastTime
+                ? Math.min(MAX_GC_OVERHEAD,
+                TimeUnit.MILLISECONDS.toNanos(gc - lastGcTime)
+                / (double) (time - lastTime))
+                : 0;
+        lastTime = time;
+        lastGcTime = gc;
+
+        for (KeyPool pool : cache.getPools()) {
+            Costs c = costs.get(pool);
+
+            if (c == null) {
+                c = new Costs();
+                costs.put(pool, c);
+            }
+
+            StatisticsRecorder stats = pool.getStatistics();
+            c.creation.update(stats.creationLatency);
+            c.reset.update(stats.resetLatency);
+
+            ReuseDecision previous = pool.getReuseDecision();
+            boolean reuse = previous == null || previous.isReuse();
+
+            // objects without reset hook are reused for free
+            if (c.creation.isKnown() && c.reset.isKnown()
+                    && cache.hasResetHook(pool.getKey())) {
+                double allocation = c.creation.mean / (1 - gcOverhead);
+
+                if (reuse) {
+                    reuse = c.reset.mean <= allocation * (1 + MARGIN);
+                } else {
+                    reuse = c.reset.mean * (1 + MARGIN) < allocation;
+                }
+            }
+
+            pool.setReuseDecision(new ReuseDecision(reuse,
+                    c.creation.getMean(), c.reset.getMean(), gcOverhead));
+        }
+    }
+
+    /**
+     * @return the accumulated collection time of all garbage collectors
+     *         (in milliseconds)
+     */
+    private static long gcTime() {
+        long result = 0;
+
+        for (GarbageCollectorMXBean gc
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(gc.getCollectionTime(), 0);
+        }
+
+        return result;
+    }
+
+    /**
+     * Stops the advisor thread. Objects of all keys are reused afterwards.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+
+        for (KeyPool pool : cache.getPools()) {
+            pool.setReuseDecision(null);
+        }
+    }
+
+    /**
+     * Smoothed costs of one key.
+     */
+    private static class Costs {
+
+        final Average creation = new Average();
+        final Average reset = new Average();
+    }
+
+    /**
+     * Exponential moving average of the latencies that have been recorded by
+     * a histogram since the last update.
+     */
+    private static class Average {
+
+        private long count;
+        private long sum;
+        double mean = -1;
+
+        /**
+         * Adds the latencies that have been recorded since the last update.
+         * @param h the histogram
+         */
+        void update(StatisticsRecorder.Histogram h) {
+            long newCount = h.getCount();
+            long newSum = h.getSum();
+
+            if (newCount > count) {
+                double m = (newSum - sum) / (double) (newCount - count);
+                mean = mean < 0 ? m : SMOOTHING * m + (1 - SMOOTHING) * mean;
+            }
+
+            count = newCount;
+            sum = newSum;
+        }
+
+        /**
+         * @return the average latency (in nanoseconds, zero if no latency
+         *         has been recorded)
+         */
+        long getMean() {
+            return Math.max(0, (long) mean);
+        }
+
+        /**
+         * @return <code>true</code> if at least one latency has been
+         *         recorded; <code>false</code> otherwise
+         */
+        boolean isKnown() {
+            return mean >= 0;
+        }
+    }
+}
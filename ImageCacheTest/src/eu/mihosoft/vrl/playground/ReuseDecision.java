@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+/**
+ * Decision whether disposed objects of one key are reset and reused or
+ * dropped (see {@link ObjectCache#setAdaptiveReuse(long,
+ * java.util.concurrent.TimeUnit)}), together with the measured costs the
+ * decision is based on. Instances are immutable.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public final class ReuseDecision {
+
+    private final boolean reuse;
+    private final long creationCost;
+    private final long resetCost;
+    private final double gcOverhead;
+
+    /**
+     * Constructor.
+     * @param reuse defines whether disposed objects are reused
+     * @param creationCost the average creation latency (in nanoseconds)
+     * @param resetCost the average reset latency (in nanoseconds)
+     * @param gcOverhead the fraction of time spent in garbage collection
+     */
+    ReuseDecision(boolean reuse, long creationCost, long resetCost,
+            double gcOverhead) {
+        this.reuse = reuse;
+        this.creationCost = creationCost;
+        this.resetCost = resetCost;
+        this.gcOverhead = gcOverhead;
+    }
+
+    /**
+     * @return <code>true</code> if disposed objects are reset and reused;
+     *         <code>false</code> if they are dropped
+     */
+    public boolean isReuse() {
+        return reuse;
+    }
+
+    /**
+     * @return the average creation latency (in nanoseconds)
+     */
+    public long getCreationCost() {
+        return creationCost;
+    }
+
+    /**
+     * @return the average reset latency (in nanoseconds)
+     */
+    public long getResetCost() {
+        return resetCost;
+    }
+
+    /**
+     * @return the fraction of time spent in garbage collection (between 0
+     *         and 1)
+     */
+    public double getGcOverhead() {
+        return gcOverhead;
+    }
+
+    /**
+     * Returns the estimated cost of creating an object instead of reusing
+     * one, i.e., the creation latency inflated by the time the garbage
+     * collector spends on allocated objects.
+     * @return the estimated allocation cost (in nanoseconds)
+     */
+    public long getAllocationCost() {
+        return (long) (creationCost / (1 - gcOverhead));
+    }
+
+    /**
+     * Returns the estimated time that the decision saves per disposed
+     * object compared to the alternative.
+     * @return the estimated saving (in nanoseconds, negative if the
+     *         decision is currently not the cheaper option)
+     */
+    public long getSaving() {
+        long saving = getAllocationCost() - resetCost;
+        return reuse ? saving : -saving;
+    }
+
+    @Override
+    public String toString() {
+        return "ReuseDecision[" + (reuse ? "reuse" : "allocate")
+                + ", creation=" + creationCost + "ns, reset=" + resetCost
+                + "ns, gc=" + Math.round(gcOverhead * 100) + "%]";
+    }
+}
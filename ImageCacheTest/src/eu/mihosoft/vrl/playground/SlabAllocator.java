@@ -0,0 +1,352 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Allocates images as subimages of larger backing images (slabs). Requested
+ * sizes are rounded up to size classes, i.e., requests of different but
+ * similar sizes can reuse the same memory. Each slab is divided into
+ * horizontal shelves. Each shelf is divided into slots of one size class.
+ * Several small images therefore share one backing raster.
+ * </p>
+ * <p>
+ * Freed slots are reused by the same size class. Empty shelves are reused
+ * by other size classes. Slabs are obtained from an object cache and are
+ * returned to it as soon as they are empty, except for the last slab which
+ * is kept until {@link #clear()} is called. Images that are larger than a
+ * slab get a dedicated backing image of their size class. Freed images are
+ * cleared, i.e., allocated images are always clean.
+ * </p>
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class SlabAllocator {
+
+    private static final int MIN_SIZE = 16;
+    // largest size whose size class does not overflow
+    private static final int MAX_SIZE = 1 << 30;
+    private final ObjectCache cache;
+    private final int slabWidth;
+    private final int slabHeight;
+    private final int imageType;
+    private final List<Slab> slabs = new ArrayList<Slab>();
+    private final Map<BufferedImage, Slot> allocated =
+            new IdentityHashMap<BufferedImage, Slot>();
+
+    /**
+     * Constructor.
+     * @param cache the cache that provides the slabs (an image creator must
+     *              be registered)
+     * @param slabWidth the width of the slabs
+     * @param slabHeight the height of the slabs
+     * @param imageType the image type, e.g.,
+     *                  <code>BufferedImage.TYPE_INT_ARGB</code>
+     */
+    public SlabAllocator(ObjectCache cache,
+            int slabWidth, int slabHeight, int imageType) {
+        this.cache = cache;
+        this.slabWidth = slabWidth;
+        this.slabHeight = slabHeight;
+        this.imageType = imageType;
+    }
+
+    /**
+     * Constructor. Creates an allocator with 2048x2048
+     * <code>TYPE_INT_ARGB</code> slabs.
+     * @param cache the cache that provides the slabs (an image creator must
+     *              be registered)
+     */
+    public SlabAllocator(ObjectCache cache) {
+        this(cache, 2048, 2048, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Returns the size class of the specified size. Size classes are spaced
+     * by a quarter of the next smaller power of two, i.e., at most 25% of
+     * each dimension is wasted.
+     * @param size the requested size
+     * @return the size class
+     */
+    public static int sizeClass(int size) {
+        if (size <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+
+        int step = Integer.highestOneBit(size - 1) / 4;
+
+        return (size + step - 1) / step * step;
+    }
+
+    /**
+     * Allocates an image.
+     * @param w the image width
+     * @param h the image height
+     * @return a cleared image of the requested size
+     * @throws ClassNotSupportedException if the cache cannot create images
+     * @throws IllegalArgumentException if the size is not positive or if the
+     *         rounded size exceeds the maximum size of an image
+     */
+    public synchronized BufferedImage allocate(int w, int h)
+            throws ClassNotSupportedException {
+        if (w <= 0 || h <= 0) {
+            throw new IllegalArgumentException(
+                    "Image size must be positive: " + w + "x" + h);
+        }
+
+        if (w > MAX_SIZE || h > MAX_SIZE
+                || (long) sizeClass(w) * sizeClass(h) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "Image size too large: " + w + "x" + h);
+        }
+
+        Slot slot = allocateSlot(sizeClass(w), sizeClass(h));
+        Shelf shelf = slot.shelf;
+
+        BufferedImage view = shelf.views[slot.index];
+
+        if (view == null || view.getWidth() != w || view.getHeight() != h) {
+            view = slot.slab.image.getSubimage(
+                    slot.index * shelf.slotWidth, shelf.y, w, h);
+            shelf.views[slot.index] = view;
+        }
+
+        allocated.put(view, slot);
+
+        return view;
+    }
+
+    /**
+     * Frees an image that has been allocated by this allocator.
+     * @param image the image to free
+     * @throws IllegalArgumentException if the image has not been allocated
+     *         by this allocator or has already been freed
+     */
+    public synchronized void free(BufferedImage image) {
+        Slot slot = allocated.remove(image);
+
+        if (slot == null) {
+            throw new IllegalArgumentException(
+                    "Image not allocated by this allocator or already freed!");
+        }
+
+        ImageClearer.clear(image);
+
+        Slab slab = slot.slab;
+        Shelf shelf = slot.shelf;
+
+        shelf.used.clear(slot.index);
+
+        // release trailing empty shelves to make room for other size classes
+        if (shelf.used.isEmpty()) {
+            while (!slab.shelves.isEmpty()) {
+                Shelf last = slab.shelves.get(slab.shelves.size() - 1);
+                if (!last.used.isEmpty()) {
+                    break;
+                }
+                slab.shelves.remove(slab.shelves.size() - 1);
+                slab.top = last.y;
+            }
+        }
+
+        if (slab.shelves.isEmpty() && slabs.size() > 1) {
+            slabs.remove(slab);
+            cache.dispose(slab.image);
+        }
+    }
+
+    /**
+     * Returns all slabs to the cache. Images that have been allocated by this
+     * allocator must not be used afterwards. The allocator can be used again,
+     * i.e., new slabs are requested from the cache.
+     */
+    public synchronized void clear() {
+        for (Slab slab : slabs) {
+            cache.dispose(slab.image);
+        }
+
+        slabs.clear();
+        allocated.clear();
+    }
+
+    /**
+     * Returns the number of slabs that are currently used by this allocator.
+     * @return the number of slabs
+     */
+    public synchronized int getNumberOfSlabs() {
+        return slabs.size();
+    }
+
+    /**
+     * Allocates a slot of the specified size class. Slots are taken from
+     * shelves of the same size class first, then from empty shelves and new
+     * shelves. A new slab is requested from the cache if no slab has enough
+     * space left.
+     * @param w the slot width
+     * @param h the slot height
+     * @return the allocated slot
+     * @throws ClassNotSupportedException if the cache cannot create images
+     */
+    private Slot allocateSlot(int w, int h)
+            throws ClassNotSupportedException {
+        for (Slab slab : slabs) {
+            for (Shelf shelf : slab.shelves) {
+                if (shelf.slotWidth == w && shelf.slotHeight == h) {
+                    int index = shelf.used.nextClearBit(0);
+                    if (index < shelf.views.length) {
+                        return new Slot(slab, shelf, index);
+                    }
+                }
+            }
+        }
+
+        for (Slab slab : slabs) {
+            if (slab.image.getWidth() < w) {
+                continue;
+            }
+            for (Shelf shelf : slab.shelves) {
+                if (shelf.used.isEmpty() && shelf.height >= h) {
+                    shelf.setSlotSize(w, h, slab.image.getWidth());
+                    return new Slot(slab, shelf, 0);
+                }
+            }
+            if (slab.image.getHeight() - slab.top >= h) {
+                return new Slot(slab, slab.addShelf(w, h), 0);
+            }
+        }
+
+        // large sizes get a dedicated backing image
+        ImageKey slabKey = w > slabWidth || h > slabHeight
+                ? new ImageKey(w, h, imageType)
+                : new ImageKey(slabWidth, slabHeight, imageType);
+
+        Slab slab = new Slab((BufferedImage) cache.getInstance(slabKey));
+        slabs.add(slab);
+
+        return new Slot(slab, slab.addShelf(w, h), 0);
+    }
+
+    /**
+     * Backing image that is divided into shelves.
+     */
+    private static class Slab {
+
+        private final BufferedImage image;
+        private final List<Shelf> shelves = new ArrayList<Shelf>();
+        private int top;
+
+        /**
+         * Constructor.
+         * @param image the backing image
+         */
+        Slab(BufferedImage image) {
+            this.image = image;
+        }
+
+        /**
+         * Adds a shelf below the existing shelves.
+         * @param w the slot width
+         * @param h the slot height
+         * @return the new shelf
+         */
+        Shelf addShelf(int w, int h) {
+            Shelf shelf = new Shelf(top, h);
+            shelf.setSlotSize(w, h, image.getWidth());
+            shelves.add(shelf);
+            top += h;
+            return shelf;
+        }
+    }
+
+    /**
+     * Horizontal strip of a slab that is divided into slots of one size
+     * class.
+     */
+    private static class Shelf {
+
+        private final int y;
+        private final int height;
+        private int slotWidth;
+        private int slotHeight;
+        private final BitSet used = new BitSet();
+        private BufferedImage[] views;
+
+        /**
+         * Constructor.
+         * @param y the y coordinate of the shelf
+         * @param height the shelf height
+         */
+        Shelf(int y, int height) {
+            this.y = y;
+            this.height = height;
+        }
+
+        /**
+         * Assigns a size class to this (empty) shelf.
+         * @param w the slot width
+         * @param h the slot height
+         * @param slabWidth the width of the slab
+         */
+        void setSlotSize(int w, int h, int slabWidth) {
+            slotWidth = w;
+            slotHeight = h;
+            views = new BufferedImage[slabWidth / w];
+        }
+    }
+
+    /**
+     * Allocated slot.
+     */
+    private static class Slot {
+
+        private final Slab slab;
+        private final Shelf shelf;
+        private final int index;
+
+        /**
+         * Constructor. Marks the slot as used.
+         * @param slab the slab of the slot
+         * @param shelf the shelf of the slot
+         * @param index the slot index
+         */
+        Slot(Slab slab, Shelf shelf, int index) {
+            this.slab = slab;
+            this.shelf = shelf;
+            this.index = index;
+            shelf.used.set(index);
+        }
+    }
+}
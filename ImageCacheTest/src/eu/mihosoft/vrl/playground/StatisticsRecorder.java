@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the statistics of one object key. Counters are striped, i.e.,
+ * threads that record concurrently do not contend.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+class StatisticsRecorder {
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder creations = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+    final LongAdder returns = new LongAdder();
+    final LongAdder leaks = new LongAdder();
+    final LongAdder bypasses = new LongAdder();
+    final Histogram lookupLatency = new Histogram();
+    final Histogram creationLatency = new Histogram();
+    final Histogram resetLatency = new Histogram();
+
+    /**
+     * Returns a snapshot of the recorded statistics.
+     * @return a snapshot of the recorded statistics
+     */
+    CacheStatistics snapshot() {
+        return new CacheStatistics(hits.sum(), misses.sum(), creations.sum(),
+                evictions.sum(), returns.sum(), leaks.sum(), bypasses.sum(),
+                lookupLatency.snapshot(), creationLatency.snapshot(),
+                resetLatency.snapshot());
+    }
+
+    /**
+     * Latency histogram with striped counters.
+     */
+    static class Histogram {
+
+        private final LongAdder[] counts =
+                new LongAdder[LatencyHistogram.NUM_BUCKETS];
+        private final LongAdder sum = new LongAdder();
+
+        /**
+         * Constructor.
+         */
+        Histogram() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records a latency.
+         * @param nanos the latency (in nanoseconds)
+         */
+        void record(long nanos) {
+            counts[LatencyHistogram.bucket(nanos)].increment();
+            sum.add(nanos);
+        }
+
+        /**
+         * @return the number of recorded latencies
+         */
+        long getCount() {
+            long result = 0;
+            for (LongAdder c : counts) {
+                result += c.sum();
+            }
+            return result;
+        }
+
+        /**
+         * @return the sum of all recorded latencies (in nanoseconds)
+         */
+        long getSum() {
+            return sum.sum();
+        }
+
+        /**
+         * Returns a snapshot of this histogram.
+         * @return a snapshot of this histogram
+         */
+        LatencyHistogram snapshot() {
+            long[] result = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                result[i] = counts[i].sum();
+            }
+            return new LatencyHistogram(result, sum.sum());
+        }
+    }
+}
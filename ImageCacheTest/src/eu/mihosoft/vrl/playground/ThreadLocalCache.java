@@ -0,0 +1,314 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Per-thread layer in front of a shared object cache. Each thread keeps a
+ * small stash (magazine) of reset objects per key. Objects that are
+ * disposed and requested again by the same thread are served from its
+ * magazine without touching the free lists of the shared cache.
+ * </p>
+ * <p>
+ * If a magazine overflows, half of it is returned to the shared cache in
+ * one bulk operation. Magazines of terminated threads are returned by
+ * {@link #flushTerminated()} which is called whenever a new thread uses this
+ * layer and periodically by a background thread (see {@link #shutdown()}).
+ * </p>
+ * <p>
+ * Objects in a magazine are reset by the disposing thread and count as
+ * used by the shared cache, i.e., they are not evicted.
+ * </p>
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class ThreadLocalCache {
+
+    private final ObjectCache cache;
+    private final int magazineSize;
+    private final ConcurrentLinkedQueue<Magazine> magazines =
+            new ConcurrentLinkedQueue<Magazine>();
+    // interval of the background thread that returns magazines of
+    // terminated threads (in milliseconds)
+    private static final long REAPER_INTERVAL = 1000;
+    private ScheduledExecutorService reaper;
+    private boolean shutdown;
+    private final ThreadLocal<Magazine> localMagazine =
+            new ThreadLocal<Magazine>() {
+
+                @Override
+                protected Magazine initialValue() {
+                    flushTerminated();
+                    startReaper();
+                    Magazine m = new Magazine(Thread.currentThread());
+                    magazines.add(m);
+                    return m;
+                }
+            };
+
+    /**
+     * Constructor.
+     * @param cache the shared cache
+     * @param magazineSize the maximum number of objects per thread and key
+     *                     (must be positive)
+     */
+    public ThreadLocalCache(ObjectCache cache, int magazineSize) {
+        if (magazineSize < 1) {
+            throw new IllegalArgumentException(
+                    "Magazine size must be positive!");
+        }
+        this.cache = cache;
+        this.magazineSize = magazineSize;
+    }
+
+    /**
+     * Constructor. Each thread keeps up to four objects per key.
+     * @param cache the shared cache
+     */
+    public ThreadLocalCache(ObjectCache cache) {
+        this(cache, 4);
+    }
+
+    /**
+     * @return the shared cache
+     */
+    public ObjectCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns an instance of a given class (see
+     * {@link ObjectCache#getInstance(java.lang.Class, java.lang.Object[])}).
+     * @param c the class to use for instanciation
+     * @param params the parameters to use for instanciation
+     * @return an instance of class c
+     * @throws ClassNotSupportedException
+     */
+    public Object getInstance(Class<?> c, Object... params)
+            throws ClassNotSupportedException {
+        return getInstance(cache.getCreator(c).createKey(params));
+    }
+
+    /**
+     * Returns an instance that matches the given key. The magazine of the
+     * calling thread is checked first.
+     * @param key the key that specifies the requested object
+     * @return an instance that matches the given key
+     * @throws ClassNotSupportedException
+     */
+    public Object getInstance(ObjectKey key)
+            throws ClassNotSupportedException {
+        Stash stash = localMagazine.get().stashes.get(key);
+
+        if (stash != null && stash.size > 0) {
+            ObjectEntry oE = stash.entries[--stash.size];
+            stash.entries[stash.size] = null;
+            oE.unstash();
+            cache.countStashHit(oE);
+            Object o = oE.getObject();
+            cache.startLease(oE, o);
+            return o;
+        }
+
+        return cache.getInstance(key);
+    }
+
+    /**
+     * Disposes an object. The object is reset and kept in the magazine of
+     * the calling thread.
+     * @param o the object to dispose
+     * @throws IllegalArgumentException if the object is not owned by the
+     *         shared cache
+     * @throws IllegalStateException if the object has already been disposed
+     */
+    public void dispose(Object o) {
+        ObjectEntry oE = cache.getEntry(o);
+
+        if (oE.getState() != ObjectEntry.IN_USE || !cache.resetInUse(oE)) {
+            // let the shared cache report errors and handle failed resets
+            cache.dispose(o);
+            return;
+        }
+
+        Map<ObjectKey, Stash> stashes = localMagazine.get().stashes;
+        Stash stash = stashes.get(oE.getKey());
+
+        if (stash == null) {
+            stash = new Stash(magazineSize);
+            stashes.put(oE.getKey(), stash);
+        }
+
+        if (!oE.stash()) {
+            throw new IllegalStateException(
+                    "Object has already been disposed!");
+        }
+
+        oE.endLease(o);
+        cache.countStashReturn(oE);
+
+        if (stash.size == stash.entries.length) {
+            stash.flush(cache, Math.max(1, stash.size / 2));
+        }
+
+        stash.entries[stash.size++] = oE;
+    }
+
+    /**
+     * Returns all objects in the magazine of the calling thread to the
+     * shared cache.
+     */
+    public void flush() {
+        localMagazine.get().flush(cache);
+    }
+
+    /**
+     * Returns all objects in the magazines of terminated threads to the
+     * shared cache.
+     */
+    public void flushTerminated() {
+        for (Iterator<Magazine> it = magazines.iterator(); it.hasNext();) {
+            Magazine m = it.next();
+            // only the thread that removes a magazine may flush it
+            if (!m.owner.isAlive() && magazines.remove(m)) {
+                m.flush(cache);
+            }
+        }
+    }
+
+    /**
+     * Starts the background thread that returns the magazines of terminated
+     * threads (only once).
+     */
+    private synchronized void startReaper() {
+        if (reaper != null || shutdown) {
+            return;
+        }
+
+        reaper = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("ObjectCache-Magazines-"));
+        reaper.scheduleWithFixedDelay(new Runnable() {
+
+            public void run() {
+                try {
+                    flushTerminated();
+                } catch (RuntimeException ex) {
+                    // keep the periodic task alive
+                    Logger.getLogger(ThreadLocalCache.class.getName()).log(
+                            Level.SEVERE, "Cannot flush magazines", ex);
+                }
+            }
+        }, REAPER_INTERVAL, REAPER_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background thread that returns the magazines of terminated
+     * threads and returns the magazines of all threads that have terminated
+     * so far. Magazines of threads that terminate afterwards are only
+     * returned by {@link #flushTerminated()}.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            if (reaper != null) {
+                reaper.shutdownNow();
+                reaper = null;
+            }
+        }
+        flushTerminated();
+    }
+
+    /**
+     * Objects of one thread.
+     */
+    private static class Magazine {
+
+        private final Thread owner;
+        private final Map<ObjectKey, Stash> stashes =
+                new HashMap<ObjectKey, Stash>();
+
+        /**
+         * Constructor.
+         * @param owner the thread that owns this magazine
+         */
+        Magazine(Thread owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Returns all objects to the shared cache.
+         * @param cache the shared cache
+         */
+        void flush(ObjectCache cache) {
+            for (Stash stash : stashes.values()) {
+                stash.flush(cache, stash.size);
+            }
+        }
+    }
+
+    /**
+     * Objects of one thread and key.
+     */
+    private static class Stash {
+
+        private final ObjectEntry[] entries;
+        private int size;
+
+        /**
+         * Constructor.
+         * @param capacity the maximum number of objects
+         */
+        Stash(int capacity) {
+            entries = new ObjectEntry[capacity];
+        }
+
+        /**
+         * Returns the oldest objects to the shared cache.
+         * @param cache the shared cache
+         * @param n the number of objects to return
+         */
+        void flush(ObjectCache cache, int n) {
+            cache.releaseAll(entries, n);
+            System.arraycopy(entries, n, entries, 0, size - n);
+            for (int i = size - n; i < size; i++) {
+                entries[i] = null;
+            }
+            size -= n;
+        }
+    }
+}
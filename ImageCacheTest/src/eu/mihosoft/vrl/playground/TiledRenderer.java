@@ -0,0 +1,212 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders large images in parallel. The image is split into fixed-size
+ * tiles. Each tile is taken from an object cache, cleared, painted and copied
+ * into the destination image on a fork-join pool. Tiles are returned to the
+ * cache as soon as they have been copied, i.e., the number of tiles in use is
+ * bounded by the parallelism of the pool. If an {@link ImageClearer} has been
+ * registered as reset hook for images, tiles are cleared by the cache
+ * instead, i.e., only the painted region of each tile is cleared once. Other
+ * reset hooks are not expected to clear pixels.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class TiledRenderer {
+
+    private final ObjectCache cache;
+    private final int tileSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor.
+     * @param cache the cache that provides the tiles (an image creator must
+     *              be registered)
+     * @param tileSize the width and height of the tiles
+     * @param pool the pool that renders the tiles
+     */
+    public TiledRenderer(ObjectCache cache, int tileSize, ForkJoinPool pool) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException(
+                    "Tile size must be positive: " + tileSize);
+        }
+        this.cache = cache;
+        this.tileSize = tileSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Constructor. Tiles are rendered on the common fork-join pool.
+     * @param cache the cache that provides the tiles (an image creator must
+     *              be registered)
+     * @param tileSize the width and height of the tiles
+     */
+    public TiledRenderer(ObjectCache cache, int tileSize) {
+        this(cache, tileSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor. Tiles are 256x256 pixels and are rendered on the common
+     * fork-join pool.
+     * @param cache the cache that provides the tiles (an image creator must
+     *              be registered)
+     */
+    public TiledRenderer(ObjectCache cache) {
+        this(cache, 256);
+    }
+
+    /**
+     * @return the width and height of the tiles
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Renders an image. The pixels of the destination image are replaced by
+     * the painted tiles. The method returns after all tiles have been
+     * rendered.
+     * @param destination the destination image (tiles have the same format,
+     *                    i.e., they are copied without conversion)
+     * @param painter the painter
+     * @throws ClassNotSupportedException if no image creator has been
+     *         registered
+     */
+    public void render(BufferedImage destination, TilePainter painter)
+            throws ClassNotSupportedException {
+        cache.getCreator(BufferedImage.class);
+
+        int cols = (destination.getWidth() + tileSize - 1) / tileSize;
+        int rows = (destination.getHeight() + tileSize - 1) / tileSize;
+
+        pool.invoke(new TileTask(destination, painter,
+                ImageKey.compatible(destination, tileSize, tileSize),
+                cols, 0, cols * rows));
+    }
+
+    /**
+     * Renders one tile and copies it into the destination image.
+     * @param destination the destination image
+     * @param painter the painter
+     * @param key the key of the tiles
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     */
+    private void renderTile(BufferedImage destination, TilePainter painter,
+            ImageKey key, int x, int y) {
+        int w = Math.min(tileSize, destination.getWidth() - x);
+        int h = Math.min(tileSize, destination.getHeight() - y);
+
+        BufferedImage tile;
+
+        try {
+            tile = (BufferedImage) cache.getInstance(key);
+        } catch (ClassNotSupportedException ex) {
+            // checked before rendering
+            throw new IllegalStateException(ex);
+        }
+
+        try {
+            if (cache.getResetHook(key) instanceof ImageClearer) {
+                // the hook clears the painted region when the tile is disposed
+                cache.getDirtyRegion(tile).add(0, 0, w, h);
+            } else {
+                ImageClearer.clear(tile, 0, 0, w, h);
+            }
+
+            Graphics2D g = tile.createGraphics();
+
+            try {
+                g.clipRect(0, 0, w, h);
+                g.translate(-x, -y);
+                painter.paint(g, x, y, w, h);
+            } finally {
+                g.dispose();
+            }
+
+            destination.getRaster().setDataElements(x, y,
+                    tile.getRaster().createChild(0, 0, w, h, 0, 0, null));
+        } finally {
+            cache.dispose(tile);
+        }
+    }
+
+    /**
+     * Renders a range of tiles. Ranges are split until they contain a single
+     * tile.
+     */
+    private class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final BufferedImage destination;
+        private final TilePainter painter;
+        private final ImageKey key;
+        private final int cols;
+        private final int from;
+        private final int to;
+
+        /**
+         * Constructor.
+         * @param destination the destination image
+         * @param painter the painter
+         * @param key the key of the tiles
+         * @param cols the number of tile columns
+         * @param from the index of the first tile (row-major)
+         * @param to the index after the last tile
+         */
+        TileTask(BufferedImage destination, TilePainter painter,
+                ImageKey key, int cols, int from, int to) {
+            this.destination = destination;
+            this.painter = painter;
+            this.key = key;
+            this.cols = cols;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                renderTile(destination, painter, key,
+                        (from % cols) * tileSize, (from / cols) * tileSize);
+            } else if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(destination, painter, key, cols, from, mid),
+                        new TileTask(destination, painter, key, cols, mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,602 @@
+/*
+ * Copyright 2011 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY Michael Hoffer <info@michaelhoffer.de> "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL Michael Hoffer <info@michaelhoffer.de> OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of Michael Hoffer <info@michaelhoffer.de>.
+ */
+
+
+package eu.mihosoft.vrl.playground;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.Map;
+
+/**
+ * Graphics object that records the device space bounds of all drawing
+ * operations in a dirty region. All operations are delegated to another
+ * graphics object. The recorded bounds are conservative, i.e., they may be
+ * larger than the modified pixels but never smaller.
+ * @author Michael Hoffer <info@michaelhoffer.de>
+ */
+public class TrackingGraphics2D extends Graphics2D {
+
+    private final Graphics2D g;
+    private final DirtyRegion region;
+
+    /**
+     * Constructor.
+     * @param g the graphics object to delegate to
+     * @param region the region that records the bounds of all drawing
+     *               operations
+     */
+    public TrackingGraphics2D(Graphics2D g, DirtyRegion region) {
+        this.g = g;
+        this.region = region;
+        region.startTracking();
+    }
+
+    /**
+     * @return the region that records the bounds of all drawing operations
+     */
+    public DirtyRegion getDirtyRegion() {
+        return region;
+    }
+
+    /**
+     * Adds the device space bounds of a user space shape to the dirty
+     * region.
+     * @param s the shape
+     * @param stroked defines whether the shape is drawn with the current
+     *                stroke
+     */
+    private void mark(Shape s, boolean stroked) {
+        Rectangle2D b = s.getBounds2D();
+        double pad = 0;
+
+        if (stroked) {
+            Stroke stroke = g.getStroke();
+            if (!(stroke instanceof BasicStroke)) {
+                markClip();
+                return;
+            }
+            BasicStroke bs = (BasicStroke) stroke;
+            double factor = Math.sqrt(2);
+            if (bs.getLineJoin() == BasicStroke.JOIN_MITER) {
+                factor = Math.max(factor, bs.getMiterLimit());
+            }
+            // a line width of zero still touches one pixel
+            pad = Math.max(bs.getLineWidth(), 1) / 2 * factor;
+        }
+
+        b = new Rectangle2D.Double(b.getX() - pad, b.getY() - pad,
+                b.getWidth() + 2 * pad, b.getHeight() + 2 * pad);
+
+        markDevice(g.getTransform().createTransformedShape(b).getBounds());
+    }
+
+    /**
+     * Adds a user space rectangle to the dirty region.
+     * @param x the x coordinate of the rectangle
+     * @param y the y coordinate of the rectangle
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     * @param stroked defines whether the rectangle is drawn with the current
+     *                stroke
+     */
+    private void mark(double x, double y, double w, double h,
+            boolean stroked) {
+        mark(new Rectangle2D.Double(x, y, w, h), stroked);
+    }
+
+    /**
+     * Adds the current clip (or the whole image if no clip is set) to the
+     * dirty region. This is used if the bounds of an operation are unknown.
+     */
+    private void markClip() {
+        Shape clip = g.getClip();
+
+        if (clip == null) {
+            region.addAll();
+        } else {
+            markDevice(g.getTransform().createTransformedShape(clip).
+                    getBounds());
+        }
+    }
+
+    /**
+     * Adds a device space rectangle to the dirty region. The rectangle is
+     * enlarged by one pixel to cover antialiasing and clipped to the current
+     * clip.
+     * @param r the rectangle
+     */
+    private void markDevice(Rectangle r) {
+        r.grow(1, 1);
+
+        Shape clip = g.getClip();
+
+        if (clip != null) {
+            r = r.intersection(g.getTransform().
+                    createTransformedShape(clip).getBounds());
+        }
+
+        region.add(r.x, r.y, r.width, r.height);
+    }
+
+    @Override
+    public void draw(Shape s) {
+        mark(s, true);
+        g.draw(s);
+    }
+
+    @Override
+    public boolean drawImage(Image img, AffineTransform xform,
+            ImageObserver obs) {
+        int w = img.getWidth(null);
+        int h = img.getHeight(null);
+        if (w < 0 || h < 0) {
+            markClip();
+        } else {
+            mark(xform.createTransformedShape(new Rectangle(0, 0, w, h)),
+                    false);
+        }
+        return g.drawImage(img, xform, obs);
+    }
+
+    @Override
+    public void drawImage(BufferedImage img, BufferedImageOp op, int x,
+            int y) {
+        Rectangle2D b = op == null
+                ? new Rectangle(0, 0, img.getWidth(), img.getHeight())
+                : op.getBounds2D(img);
+        mark(b.getX() + x, b.getY() + y, b.getWidth(), b.getHeight(), false);
+        g.drawImage(img, op, x, y);
+    }
+
+    @Override
+    public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+        mark(xform.createTransformedShape(new Rectangle(img.getMinX(),
+                img.getMinY(), img.getWidth(), img.getHeight())), false);
+        g.drawRenderedImage(img, xform);
+    }
+
+    @Override
+    public void drawRenderableImage(RenderableImage img,
+            AffineTransform xform) {
+        markClip();
+        g.drawRenderableImage(img, xform);
+    }
+
+    @Override
+    public void drawString(String str, int x, int y) {
+        drawString(str, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(String str, float x, float y) {
+        GlyphVector gv = g.getFont().createGlyphVector(
+                g.getFontRenderContext(), str);
+        Rectangle2D b = gv.getVisualBounds();
+        mark(b.getX() + x, b.getY() + y, b.getWidth(), b.getHeight(), false);
+        g.drawString(str, x, y);
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, int x,
+            int y) {
+        markClip();
+        g.drawString(iterator, x, y);
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, float x,
+            float y) {
+        markClip();
+        g.drawString(iterator, x, y);
+    }
+
+    @Override
+    public void drawGlyphVector(GlyphVector gv, float x, float y) {
+        Rectangle2D b = gv.getVisualBounds();
+        mark(b.getX() + x, b.getY() + y, b.getWidth(), b.getHeight(), false);
+        g.drawGlyphVector(gv, x, y);
+    }
+
+    @Override
+    public void fill(Shape s) {
+        mark(s, false);
+        g.fill(s);
+    }
+
+    @Override
+    public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+        return g.hit(rect, s, onStroke);
+    }
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return g.getDeviceConfiguration();
+    }
+
+    @Override
+    public void setComposite(Composite comp) {
+        g.setComposite(comp);
+    }
+
+    @Override
+    public void setPaint(Paint paint) {
+        g.setPaint(paint);
+    }
+
+    @Override
+    public void setStroke(Stroke s) {
+        g.setStroke(s);
+    }
+
+    @Override
+    public void setRenderingHint(RenderingHints.Key hintKey,
+            Object hintValue) {
+        g.setRenderingHint(hintKey, hintValue);
+    }
+
+    @Override
+    public Object getRenderingHint(RenderingHints.Key hintKey) {
+        return g.getRenderingHint(hintKey);
+    }
+
+    @Override
+    public void setRenderingHints(Map<?, ?> hints) {
+        g.setRenderingHints(hints);
+    }
+
+    @Override
+    public void addRenderingHints(Map<?, ?> hints) {
+        g.addRenderingHints(hints);
+    }
+
+    @Override
+    public RenderingHints getRenderingHints() {
+        return g.getRenderingHints();
+    }
+
+    @Override
+    public void translate(int x, int y) {
+        g.translate(x, y);
+    }
+
+    @Override
+    public void translate(double tx, double ty) {
+        g.translate(tx, ty);
+    }
+
+    @Override
+    public void rotate(double theta) {
+        g.rotate(theta);
+    }
+
+    @Override
+    public void rotate(double theta, double x, double y) {
+        g.rotate(theta, x, y);
+    }
+
+    @Override
+    public void scale(double sx, double sy) {
+        g.scale(sx, sy);
+    }
+
+    @Override
+    public void shear(double shx, double shy) {
+        g.shear(shx, shy);
+    }
+
+    @Override
+    public void transform(AffineTransform tx) {
+        g.transform(tx);
+    }
+
+    @Override
+    public void setTransform(AffineTransform tx) {
+        g.setTransform(tx);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return g.getTransform();
+    }
+
+    @Override
+    public Paint getPaint() {
+        return g.getPaint();
+    }
+
+    @Override
+    public Composite getComposite() {
+        return g.getComposite();
+    }
+
+    @Override
+    public void setBackground(Color color) {
+        g.setBackground(color);
+    }
+
+    @Override
+    public Color getBackground() {
+        return g.getBackground();
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return g.getStroke();
+    }
+
+    @Override
+    public void clip(Shape s) {
+        g.clip(s);
+    }
+
+    @Override
+    public FontRenderContext getFontRenderContext() {
+        return g.getFontRenderContext();
+    }
+
+    @Override
+    public Graphics create() {
+        return new TrackingGraphics2D((Graphics2D) g.create(), region);
+    }
+
+    @Override
+    public Color getColor() {
+        return g.getColor();
+    }
+
+    @Override
+    public void setColor(Color c) {
+        g.setColor(c);
+    }
+
+    @Override
+    public void setPaintMode() {
+        g.setPaintMode();
+    }
+
+    @Override
+    public void setXORMode(Color c1) {
+        g.setXORMode(c1);
+    }
+
+    @Override
+    public Font getFont() {
+        return g.getFont();
+    }
+
+    @Override
+    public void setFont(Font font) {
+        g.setFont(font);
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(Font f) {
+        return g.getFontMetrics(f);
+    }
+
+    @Override
+    public Rectangle getClipBounds() {
+        return g.getClipBounds();
+    }
+
+    @Override
+    public void clipRect(int x, int y, int width, int height) {
+        g.clipRect(x, y, width, height);
+    }
+
+    @Override
+    public void setClip(int x, int y, int width, int height) {
+        g.setClip(x, y, width, height);
+    }
+
+    @Override
+    public Shape getClip() {
+        return g.getClip();
+    }
+
+    @Override
+    public void setClip(Shape clip) {
+        g.setClip(clip);
+    }
+
+    @Override
+    public void copyArea(int x, int y, int width, int height, int dx,
+            int dy) {
+        mark(x + dx, y + dy, width, height, false);
+        g.copyArea(x, y, width, height, dx, dy);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        mark(Math.min(x1, x2), Math.min(y1, y2),
+                Math.abs(x2 - x1), Math.abs(y2 - y1), true);
+        g.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        mark(x, y, width, height, false);
+        g.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void clearRect(int x, int y, int width, int height) {
+        mark(x, y, width, height, false);
+        g.clearRect(x, y, width, height);
+    }
+
+    @Override
+    public void drawRoundRect(int x, int y, int width, int height,
+            int arcWidth, int arcHeight) {
+        mark(x, y, width, height, true);
+        g.drawRoundRect(x, y, width, height, arcWidth, arcHeight);
+    }
+
+    @Override
+    public void fillRoundRect(int x, int y, int width, int height,
+            int arcWidth, int arcHeight) {
+        mark(x, y, width, height, false);
+        g.fillRoundRect(x, y, width, height, arcWidth, arcHeight);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        mark(x, y, width, height, true);
+        g.drawOval(x, y, width, height);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        mark(x, y, width, height, false);
+        g.fillOval(x, y, width, height);
+    }
+
+    @Override
+    public void drawArc(int x, int y, int width, int height, int startAngle,
+            int arcAngle) {
+        mark(x, y, width, height, true);
+        g.drawArc(x, y, width, height, startAngle, arcAngle);
+    }
+
+    @Override
+    public void fillArc(int x, int y, int width, int height, int startAngle,
+            int arcAngle) {
+        mark(x, y, width, height, false);
+        g.fillArc(x, y, width, height, startAngle, arcAngle);
+    }
+
+    @Override
+    public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+        mark(new Polygon(xPoints, yPoints, nPoints), true);
+        g.drawPolyline(xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        mark(new Polygon(xPoints, yPoints, nPoints), true);
+        g.drawPolygon(xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        mark(new Polygon(xPoints, yPoints, nPoints), false);
+        g.fillPolygon(xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+        markImage(img, x, y);
+        return g.drawImage(img, x, y, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height,
+            ImageObserver observer) {
+        mark(x, y, width, height, false);
+        return g.drawImage(img, x, y, width, height, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, Color bgcolor,
+            ImageObserver observer) {
+        markImage(img, x, y);
+        return g.drawImage(img, x, y, bgcolor, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height,
+            Color bgcolor, ImageObserver observer) {
+        mark(x, y, width, height, false);
+        return g.drawImage(img, x, y, width, height, bgcolor, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+            int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+        mark(Math.min(dx1, dx2), Math.min(dy1, dy2),
+                Math.abs(dx2 - dx1), Math.abs(dy2 - dy1), false);
+        return g.drawImage(img, dx1, dy1, dx2, dy2,
+                sx1, sy1, sx2, sy2, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+            int sx1, int sy1, int sx2, int sy2, Color bgcolor,
+            ImageObserver observer) {
+        mark(Math.min(dx1, dx2), Math.min(dy1, dy2),
+                Math.abs(dx2 - dx1), Math.abs(dy2 - dy1), false);
+        return g.drawImage(img, dx1, dy1, dx2, dy2,
+                sx1, sy1, sx2, sy2, bgcolor, observer);
+    }
+
+    /**
+     * Adds the bounds of an image that is drawn at the specified location to
+     * the dirty region.
+     * @param img the image
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    private void markImage(Image img, int x, int y) {
+        int w = img.getWidth(null);
+        int h = img.getHeight(null);
+        if (w < 0 || h < 0) {
+            markClip();
+        } else {
+            mark(x, y, w, h, false);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        g.dispose();
+    }
+}